@@ -0,0 +1,50 @@
+package lawnlayer.DataClass;
+
+import lawnlayer.GeneralClass.TileLabel;
+
+/**
+ * This represents a type of enemy read from the config. It is shared by all the enemies of the type and never changes.
+ */
+public final class EnemyType{
+    public static final int CAN_MAKE_RED_PATH = 1;      //The flag of the types that put red paths on the player's green path.
+    public static final int CAN_EAT_FILLED_TILE = 2;    //The flag of the types that turn filled tiles to empty tiles.
+
+    private final int id;
+    private final String name;
+    private final int moveableMask;
+    private final int flags;
+    private final String sprite;
+
+    public EnemyType(int id, String name, int moveableMask, int flags, String sprite) {
+        this.id = id;
+        this.name = name;
+        this.moveableMask = moveableMask;
+        this.flags = flags;
+        this.sprite = sprite;
+    }
+
+    public int getId() {
+        return id;
+    }
+    public String getName() {
+        return name;
+    }
+    public int getMoveableMask() {
+        return moveableMask;
+    }
+    public int getFlags() {
+        return flags;
+    }
+    public String getSprite() {
+        return sprite;
+    }
+    public boolean isMoveableArea(TileLabel tileLabel) {
+        return (moveableMask & tileLabel.getBit()) != 0;
+    }
+    public boolean canMakeRedPath() {
+        return (flags & CAN_MAKE_RED_PATH) != 0;
+    }
+    public boolean canEatFilledTile() {
+        return (flags & CAN_EAT_FILLED_TILE) != 0;
+    }
+}
@@ -0,0 +1,51 @@
+package lawnlayer.DataClass;
+
+import lawnlayer.GeneralClass.TileLabel;
+
+/**
+ * This represents the enemy types read from the config, found by the type number used in the levels.
+ * Without enemy types in the config, the four original types are used.
+ */
+public class EnemyTypeRegistry{
+    private EnemyType[] types;
+
+    public EnemyTypeRegistry(EnemyType[] types) {
+        this.types = types;
+    }
+
+    /**
+     * Create the registry of the original types: shark, whale, frog and dino.
+     * @return The default registry.
+     */
+    public static EnemyTypeRegistry createDefault(){
+        int empty = TileLabel.EMPTY.getBit();
+        int emptyOrFilled = TileLabel.EMPTY.getBit() | TileLabel.FILLED.getBit();
+        return new EnemyTypeRegistry(new EnemyType[]{
+            //A shark enemy that will simply kill player by placing red path.
+            new EnemyType(0, "shark", empty, EnemyType.CAN_MAKE_RED_PATH, "Shark"),
+            //A whale enemy that will also eat the filled tile player made.
+            new EnemyType(1, "whale", empty, EnemyType.CAN_MAKE_RED_PATH | EnemyType.CAN_EAT_FILLED_TILE, "Whale"),
+            //A frog enemy that will enter both the filled area and empty area. But can not create red path.
+            new EnemyType(2, "frog", emptyOrFilled, 0, "Frog"),
+            //A dino enemy that will enter both the filled area and empty area.
+            new EnemyType(3, "dino", emptyOrFilled, EnemyType.CAN_MAKE_RED_PATH, "Dino")
+        });
+    }
+
+    /**
+     * Get an enemy type by its number.
+     * @param id The type number.
+     * @return The enemy type, null if there is no such type.
+     */
+    public EnemyType get(int id){
+        if(id < 0 || id >= types.length){ return null; }
+        return types[id];
+    }
+
+    public EnemyType[] getTypes() {
+        return types;
+    }
+    public int size() {
+        return types.length;
+    }
+}
@@ -6,10 +6,16 @@ package lawnlayer.DataClass;
 public class GameData{
     private LevelData[] levels;
     private int lives;
+    private EnemyTypeRegistry enemyTypes;
 
     public GameData(LevelData[] levels, int lives) {
+        this(levels, lives, EnemyTypeRegistry.createDefault());
+    }
+
+    public GameData(LevelData[] levels, int lives, EnemyTypeRegistry enemyTypes) {
         this.levels = levels;
         this.lives = lives;
+        this.enemyTypes = enemyTypes;
     }
     
     public LevelData[] getLevels() {
@@ -24,4 +30,10 @@ public class GameData{
     public void setLives(int lives) {
         this.lives = lives;
     }
+    public EnemyTypeRegistry getEnemyTypes() {
+        return enemyTypes;
+    }
+    public void setEnemyTypes(EnemyTypeRegistry enemyTypes) {
+        this.enemyTypes = enemyTypes;
+    }
 }
\ No newline at end of file
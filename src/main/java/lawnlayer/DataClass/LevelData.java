@@ -1,11 +1,17 @@
 package lawnlayer.DataClass;
 
+import java.util.Arrays;
+
 /**
  * This represents a in game data object that stores the data loaded from the json file.
  */
 public class LevelData{
     private String outlay;
     private boolean[][] levelMap;
+    private int mapWidth;
+    private int mapHeight;
+    private int[] mapRuns;      //Run lengths of the tiles row by row, alternating solid and empty, starting with solid.
+    private boolean compiled;   //True if the level was read from a compiled binary file.
     private EnemyData[] enemies;
     private float goal;
 
@@ -14,14 +20,93 @@ public class LevelData{
         this.levelMap = levelMap;
         this.enemies = enemies;
         this.goal = goal;
+        if(levelMap != null && levelMap.length > 0){
+            this.mapWidth = levelMap[0].length;
+            this.mapHeight = levelMap.length;
+        }
+    }
+
+    public LevelData(String outlay, int mapWidth, int mapHeight, EnemyData[] enemies, float goal) {
+        this.outlay = outlay;
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+        this.enemies = enemies;
+        this.goal = goal;
+    }
+
+    public LevelData(String outlay, int mapWidth, int mapHeight, int[] mapRuns, EnemyData[] enemies, float goal) {
+        this.outlay = outlay;
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+        this.mapRuns = mapRuns;
+        this.compiled = true;
+        this.enemies = enemies;
+        this.goal = goal;
     }
 
     public boolean[][] getLevelMap() {
+        //Levels read from binary files only have the runs, build the 2d array when it is asked for.
+        if(levelMap == null && mapRuns != null){
+            levelMap = new boolean[mapHeight][mapWidth];
+            int index = 0;
+            for(int i=0; i<mapRuns.length; i++){
+                for(int t=0; t<mapRuns[i]; t++, index++){
+                    levelMap[index / mapWidth][index % mapWidth] = i % 2 == 0;
+                }
+            }
+        }
         return levelMap;
     }
+    public int[] getMapRuns() {
+        //Levels read from text files only have the 2d array, build the runs when they are asked for.
+        if(mapRuns == null && levelMap != null){
+            int[] runs = new int[16];
+            int runCount = 0;
+            boolean isSolidRun = true;
+            int length = 0;
+            for(int y=0; y<mapHeight; y++){
+                for(int x=0; x<mapWidth; x++){
+                    if(levelMap[y][x] != isSolidRun){
+                        if(runCount == runs.length){ runs = Arrays.copyOf(runs, runs.length * 2); }
+                        runs[runCount++] = length;
+                        isSolidRun = !isSolidRun;
+                        length = 0;
+                    }
+                    length++;
+                }
+            }
+            if(runCount == runs.length){ runs = Arrays.copyOf(runs, runs.length + 1); }
+            runs[runCount++] = length;
+            mapRuns = Arrays.copyOf(runs, runCount);
+        }
+        return mapRuns;
+    }
+    public void setMapRuns(int[] mapRuns) {
+        this.mapRuns = mapRuns;
+        this.levelMap = null;
+        this.compiled = true;
+    }
+    public boolean isMapLoaded() {
+        return levelMap != null || mapRuns != null;
+    }
+    public boolean isCompiled() {
+        return compiled;
+    }
+    public int getMapWidth() {
+        return mapWidth;
+    }
+    public int getMapHeight() {
+        return mapHeight;
+    }
 
     public void setLevelMap(boolean[][] levelMap) {
         this.levelMap = levelMap;
+        this.mapRuns = null;
+        this.compiled = false;
+        if(levelMap != null && levelMap.length > 0){
+            this.mapWidth = levelMap[0].length;
+            this.mapHeight = levelMap.length;
+        }
     }
 
     public String getOutlay() {
@@ -0,0 +1,35 @@
+package lawnlayer.DataClass;
+
+import lawnlayer.GameObjects.EnemySwarm;
+import lawnlayer.GameObjects.GridMap;
+
+/**
+ * This represents a level that is ready to be played, with its grid map loaded and its enemies spawned.
+ * The next level is prepared in the background, so moving to it only swaps these objects in.
+ */
+public class PreparedLevel{
+    private int levelIndex;
+    private LevelData levelData;
+    private GridMap gridMap;
+    private EnemySwarm enemies;
+
+    public PreparedLevel(int levelIndex, LevelData levelData, GridMap gridMap, EnemySwarm enemies) {
+        this.levelIndex = levelIndex;
+        this.levelData = levelData;
+        this.gridMap = gridMap;
+        this.enemies = enemies;
+    }
+
+    public int getLevelIndex() {
+        return levelIndex;
+    }
+    public LevelData getLevelData() {
+        return levelData;
+    }
+    public GridMap getGridMap() {
+        return gridMap;
+    }
+    public EnemySwarm getEnemies() {
+        return enemies;
+    }
+}
@@ -0,0 +1,102 @@
+package lawnlayer.DataClass;
+
+import lawnlayer.GlobalSettings;
+
+/**
+ * This represents the settings of a game session, such as the map size, tile size and frame rate.
+ * It starts with the default values in the global settings and can be changed by the config file or the command line.
+ */
+public class SettingsData{
+    private int frameRate = GlobalSettings.frameRate;
+    private int tickRate = GlobalSettings.tickRate;
+    private int maxCatchUpTicks = GlobalSettings.maxCatchUpTicks;
+    private int canvasWidth = GlobalSettings.canvasWidth;
+    private int canvasHeight = GlobalSettings.canvasHeight;
+    private int mapWidth = GlobalSettings.mapWidth;
+    private int mapHeight = GlobalSettings.mapHeight;
+    private int mapTileSize = GlobalSettings.mapTileSize;
+    private int topReserveHeight = GlobalSettings.topReserveHeight;
+    private int parallelCaptureThreshold = GlobalSettings.parallelCaptureThreshold;
+    private int parallelEnemyThreshold = GlobalSettings.parallelEnemyThreshold;
+    private int captureBudgetMicros = GlobalSettings.captureBudgetMicros;
+    private boolean preloadLevels = GlobalSettings.preloadLevels;
+
+    public int getFrameRate() {
+        return frameRate;
+    }
+    public void setFrameRate(int frameRate) {
+        this.frameRate = frameRate;
+    }
+    public int getTickRate() {
+        return tickRate;
+    }
+    public void setTickRate(int tickRate) {
+        this.tickRate = tickRate;
+    }
+    public int getMaxCatchUpTicks() {
+        return maxCatchUpTicks;
+    }
+    public void setMaxCatchUpTicks(int maxCatchUpTicks) {
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+    public int getCanvasWidth() {
+        return canvasWidth;
+    }
+    public void setCanvasWidth(int canvasWidth) {
+        this.canvasWidth = canvasWidth;
+    }
+    public int getCanvasHeight() {
+        return canvasHeight;
+    }
+    public void setCanvasHeight(int canvasHeight) {
+        this.canvasHeight = canvasHeight;
+    }
+    public int getMapWidth() {
+        return mapWidth;
+    }
+    public void setMapWidth(int mapWidth) {
+        this.mapWidth = mapWidth;
+    }
+    public int getMapHeight() {
+        return mapHeight;
+    }
+    public void setMapHeight(int mapHeight) {
+        this.mapHeight = mapHeight;
+    }
+    public int getMapTileSize() {
+        return mapTileSize;
+    }
+    public void setMapTileSize(int mapTileSize) {
+        this.mapTileSize = mapTileSize;
+    }
+    public int getTopReserveHeight() {
+        return topReserveHeight;
+    }
+    public void setTopReserveHeight(int topReserveHeight) {
+        this.topReserveHeight = topReserveHeight;
+    }
+    public int getParallelCaptureThreshold() {
+        return parallelCaptureThreshold;
+    }
+    public void setParallelCaptureThreshold(int parallelCaptureThreshold) {
+        this.parallelCaptureThreshold = parallelCaptureThreshold;
+    }
+    public int getParallelEnemyThreshold() {
+        return parallelEnemyThreshold;
+    }
+    public void setParallelEnemyThreshold(int parallelEnemyThreshold) {
+        this.parallelEnemyThreshold = parallelEnemyThreshold;
+    }
+    public int getCaptureBudgetMicros() {
+        return captureBudgetMicros;
+    }
+    public void setCaptureBudgetMicros(int captureBudgetMicros) {
+        this.captureBudgetMicros = captureBudgetMicros;
+    }
+    public boolean isPreloadLevels() {
+        return preloadLevels;
+    }
+    public void setPreloadLevels(boolean preloadLevels) {
+        this.preloadLevels = preloadLevels;
+    }
+}
@@ -6,10 +6,11 @@ import lawnlayer.GeneralClass.Direction;
 
 /**
  * Represents a dynamic object that can smoothly move on the grid map.
+ * The object counts the ticks itself in tick, and moves one tile every few ticks.
  */
 public abstract class DynamicObject extends GridObject {
 
-    private int movementTimer = 0;                              //The timer to set the time to wait before moving one tile unit.
+    private int movementTimer = 0;                              //The number of simulation ticks since the last move by one tile unit.
     private Direction currentDirection = Direction.NONE;        //Current moving direction of the object. Can not be changed.
     private Direction nextDirection = Direction.NONE;           //Next moving direction of the object. Can be changed.
     private float secondsPerTile = 0.08f;                        //The second to wait before moving one tile unit.
@@ -17,6 +18,7 @@ public abstract class DynamicObject extends GridObject {
     private float movementSmoothness = 3;                        //The value that control the smoothness of the movement, 1 is the minimum value which means no smoothing.
                                                                 //If the value is too high, it will be too slow to transit from one position to another. 
                                                                 //Once its time to move in logic section, it will be brought to the position immediately, which result in no smoothing.
+
     /**
      * Setup the object data.
      * @param gridPosX The position X on grid.
@@ -38,10 +40,11 @@ public abstract class DynamicObject extends GridObject {
     /**
      * Lerp the position of the object on screen, according to the current direction.
      * Each time the object actually move in logic, its position on screen will be set to the right and precise position.
+     * It only changes the screen position, so it is called by the renderer every frame instead of by the simulation.
      */
     public void smoothMovement(){
-        //Stop smoothing if the value is invalid.
-        if(movementSmoothness < 1){ return; }
+        //Stop smoothing if the value is invalid, or if the object is going to stop at the edge of the map.
+        if(movementSmoothness < 1 || isOutOfMap(currentDirection)){ return; }
 
         //Get current screen position.
         int currentX = this.getX();
@@ -50,8 +53,8 @@ public abstract class DynamicObject extends GridObject {
         //Get next screen position.
         int nextGridX = this.getGridPosX() + currentDirection.X;
         int nextGridY = this.getGridPosY() + currentDirection.Y;
-        int nextScreenX = nextGridX * GlobalSettings.mapTileSize;
-        int nextScreenY = nextGridY * GlobalSettings.mapTileSize + GlobalSettings.topReserveHeight;
+        int nextScreenX = toScreenX(nextGridX);
+        int nextScreenY = toScreenY(nextGridY);
 
         //Calculate the difference.
         int deltaX = nextScreenX - currentX;
@@ -63,54 +66,56 @@ public abstract class DynamicObject extends GridObject {
     }
 
     /**
-     * Move the object in the grid.
+     * Move the object one tile in the grid with its current direction, then take the next direction.
+     * If the object is going to move out of map, it is stopped instead.
      */
     public void gridMovement(){
-        //If more frames have passed than the number of seconds x the framerate, move the object.
-        int framesToMove = (int)(secondsPerTile * (float)GlobalSettings.frameRate);
-        if (this.movementTimer > framesToMove) {
-            //If current direction is not none, move the object and do the function.
-            if(currentDirection != Direction.NONE) {
-                //Move the object with its current direction.
-                int currentGridPosX = this.getGridPosX() + currentDirection.X;
-                int currentGridPosY = this.getGridPosY() + currentDirection.Y;
-
-                //Set object position.
-                this.setGridPosX(currentGridPosX);
-                this.setGridPosY(currentGridPosY);
-
-                //Call the function each time object moves on the grid.
-                onGridMovement();
-            }
-            
-            //Set the current direction next direction.
-            currentDirection = nextDirection;
-
-            //The timer is reset to 0.
-            this.movementTimer = 0;
+        //If the object is going to move out of map, stop the object.
+        if(isOutOfMap(currentDirection)){ stop(); }
+
+        //If current direction is not none, move the object and do the function.
+        if(currentDirection != Direction.NONE) {
+            //Move the object with its current direction.
+            int currentGridPosX = this.getGridPosX() + currentDirection.X;
+            int currentGridPosY = this.getGridPosY() + currentDirection.Y;
+
+            //Set object position.
+            this.setGridPosX(currentGridPosX);
+            this.setGridPosY(currentGridPosY);
+
+            //Call the function each time object moves on the grid.
+            onGridMovement();
         }
+
+        //Set the current direction next direction.
+        currentDirection = nextDirection;
+        //Stop now if the new direction leads out of map, so the object does not slide towards the edge until the next movement.
+        if(isOutOfMap(currentDirection)){ stop(); }
+    }
+
+    /**
+     * Get the number of ticks between two grid movements.
+     * @return The ticks per tile, at least 1.
+     */
+    public int getTicksPerTile(){
+        //The object moves once more ticks have passed than the number of seconds x the tick rate.
+        //Ticks are counted instead of frames, so the speed does not depend on how fast the game is drawn.
+        return (int)(secondsPerTile * (float)GlobalSettings.getSession().getTickRate()) + 1;
     }
 
     /**
-     * Handles the logic for each frame.
+     * Handles the logic for each simulation tick.
      */
     @Override
     public void tick() {
-        //Increments the timer
+        //After a few ticks, the object actually move in grid.
         this.movementTimer++;
-
-        //If the object is going to move out of map, stop the object.
-        if(isOutOfMap(currentDirection)){
-            stop();
-        //Else apply smooth movement to the direction.
-        }else{
-            smoothMovement();
+        if (this.movementTimer >= getTicksPerTile()) {
+            gridMovement();
+            this.movementTimer = 0;
         }
-
-        //After a few ticks, the object actually move in grid.
-        gridMovement();
     }
-    
+
     /**
      * If the object keep moving on the direction, will it move out of map?
      * This is an overload method of isOutOfMap. So we can check with other parameters.
@@ -130,13 +135,14 @@ public abstract class DynamicObject extends GridObject {
     }
 
     /**
-     * Check if the given position is out of map.
+     * Check if the given position is out of map. Uses the map size of the session.
+     * Objects that know their grid map should check with the size of the map instead.
      * @param x Position X.
      * @param y Position Y.
      * @return Return true if the position is out of map.
      */
     public boolean isOutOfMap(int x, int y){
-        return x < 0 || y < 0 || x >= GlobalSettings.mapWidth || y >= GlobalSettings.mapHeight;
+        return x < 0 || y < 0 || x >= GlobalSettings.getSession().getMapWidth() || y >= GlobalSettings.getSession().getMapHeight();
     }
 
     /**
@@ -20,7 +20,7 @@ public abstract class GridObject extends SpriteObject {
      * @param sprite The sprite reference.
      */
     public GridObject(int gridPosX, int gridPosY, PImage sprite) {
-        super(gridPosX * GlobalSettings.mapTileSize, gridPosY * GlobalSettings.mapTileSize + GlobalSettings.topReserveHeight, sprite);
+        super(toScreenX(gridPosX), toScreenY(gridPosY), sprite);
         this.gridPosX = gridPosX;
         this.gridPosY = gridPosY;
     }
@@ -38,7 +38,7 @@ public abstract class GridObject extends SpriteObject {
      * @param gridPosY The position Y on grid.
      */
     public void setGridPosY(int gridPosY) {
-        this.setY(gridPosY * GlobalSettings.mapTileSize + GlobalSettings.topReserveHeight);
+        this.setY(toScreenY(gridPosY));
         this.gridPosY = gridPosY;
     }
 
@@ -55,7 +55,7 @@ public abstract class GridObject extends SpriteObject {
      * @param gridPosX Position X on grid.
      */
     public void setGridPosX(int gridPosX) {
-        this.setX(gridPosX * GlobalSettings.mapTileSize);
+        this.setX(toScreenX(gridPosX));
         this.gridPosX = gridPosX;
     }
 
@@ -65,8 +65,8 @@ public abstract class GridObject extends SpriteObject {
      * @param gridPosY Position Y on grid.
      */
     public void setGridPos(int gridPosX, int gridPosY) {
-        this.setX(gridPosX * GlobalSettings.mapTileSize);
-        this.setY(gridPosY * GlobalSettings.mapTileSize + GlobalSettings.topReserveHeight);
+        this.setX(toScreenX(gridPosX));
+        this.setY(toScreenY(gridPosY));
         this.gridPosX = gridPosX;
         this.gridPosY = gridPosY;
     }
@@ -89,4 +89,22 @@ public abstract class GridObject extends SpriteObject {
     public boolean isOnGridPosition(int x, int y){
         return x == this.gridPosX && y == this.gridPosY;
     }
+
+    /**
+     * Convert a grid position X to the screen position X, using the tile size of the session.
+     * @param gridPosX Position X on grid.
+     * @return Position X on screen in pixel.
+     */
+    public static int toScreenX(int gridPosX){
+        return gridPosX * GlobalSettings.getSession().getMapTileSize();
+    }
+
+    /**
+     * Convert a grid position Y to the screen position Y, using the tile size and reserved height of the session.
+     * @param gridPosY Position Y on grid.
+     * @return Position Y on screen in pixel.
+     */
+    public static int toScreenY(int gridPosY){
+        return gridPosY * GlobalSettings.getSession().getMapTileSize() + GlobalSettings.getSession().getTopReserveHeight();
+    }
 }
@@ -0,0 +1,98 @@
+package lawnlayer.GameObjectClass;
+
+/**
+ * This is a spatial index that counts how many members, such as the enemies of a swarm, are standing on each grid tile.
+ * Looking up a tile reads one counter, so it does not need to go through all members. The owner of the members updates the counts when they move.
+ * The tiles are split into square chunks that are only created once a member stands in them, so huge maps with few members stay small.
+ */
+public class OccupancyGrid {
+
+    private static final int CHUNK_SHIFT = 6;                   //The chunks are 2^6 = 64 tiles wide and high.
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1; //The mask to get the position inside a chunk.
+
+    private int width;                  //The width of the indexed area in tiles.
+    private int height;                 //The height of the indexed area in tiles.
+    private int chunksX;                //The number of chunks in a row.
+    private int[][] counts;             //The number of members on each tile of each chunk, null if no member has entered the chunk.
+
+    /**
+     * Create an empty index for a map of the given size.
+     * @param width Map width.
+     * @param height Map height.
+     */
+    public OccupancyGrid(int width, int height){
+        this.width = width;
+        this.height = height;
+        this.chunksX = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.counts = new int[chunksX * ((height + CHUNK_MASK) >> CHUNK_SHIFT)][];
+    }
+
+    /**
+     * Count a member on a tile. Positions outside the area are not counted.
+     * @param x Position X.
+     * @param y Position Y.
+     */
+    public void addCount(int x, int y){
+        if(isOutOfBounds(x, y)){ return; }
+        int chunkIndex = (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT);
+        if(counts[chunkIndex] == null){
+            counts[chunkIndex] = new int[1 << (CHUNK_SHIFT * 2)];
+        }
+        counts[chunkIndex][((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)]++;
+    }
+
+    /**
+     * Take a counted member off a tile.
+     * @param x Position X.
+     * @param y Position Y.
+     */
+    public void removeCount(int x, int y){
+        if(isOutOfBounds(x, y)){ return; }
+        int[] chunk = counts[(y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT)];
+        if(chunk == null){ return; }
+        int index = ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+        if(chunk[index] > 0){ chunk[index]--; }
+    }
+
+    /**
+     * Remove all members from the index.
+     */
+    public void clear(){
+        for(int chunk=0; chunk<counts.length; chunk++){
+            counts[chunk] = null;
+        }
+    }
+
+    /**
+     * Is there any member at the grid position?
+     * @param x Position X.
+     * @param y Position Y.
+     * @return Return true if at least one member is on the tile.
+     */
+    public boolean isOccupied(int x, int y){
+        return getCount(x, y) > 0;
+    }
+
+    /**
+     * Get the number of members at the grid position.
+     * @param x Position X.
+     * @param y Position Y.
+     * @return The number of members on the tile.
+     */
+    public int getCount(int x, int y){
+        if(isOutOfBounds(x, y)){ return 0; }
+        int[] chunk = counts[(y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT)];
+        if(chunk == null){ return 0; }
+        return chunk[((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)];
+    }
+
+    /**
+     * Check if the position is outside the indexed area.
+     * @param x Position X.
+     * @param y Position Y.
+     * @return Return true if the position is out of the area.
+     */
+    private boolean isOutOfBounds(int x, int y){
+        return x < 0 || y < 0 || x >= width || y >= height;
+    }
+}
@@ -34,6 +34,14 @@ public abstract class SpriteObject {
         this.sprite = sprite;
     }
 
+    /**
+     * Gets the shape's sprite.
+     * @return The sprite reference, null if it has not been given one yet.
+     */
+    public PImage getSprite() {
+        return this.sprite;
+    }
+
     /**
      * Updates the shape every frame. Handles the logics.
      */
@@ -0,0 +1,129 @@
+package lawnlayer.GameObjects;
+
+import java.util.ArrayList;
+import lawnlayer.GeneralClass.Direction;
+
+/**
+ * This is a precomputed table of the directions an enemy can bounce to.
+ * The bounce only depends on which of the eight tiles around the enemy it can move on, and on the direction it was going,
+ * so every case is worked out once and a bounce is one lookup plus at most one random pick.
+ *
+ * An entry is packed in an int: the lowest 4 bits are the number of candidates, bit 4 is set if one of them is picked at random,
+ * and from bit 8 on each candidate takes 4 bits, holding the ordinal of its direction.
+ * An entry with no candidates means the enemy is stuck. An entry with one candidate and no random pick is a forced bounce.
+ */
+public final class BounceTable {
+
+    private static final Direction[] DIRECTIONS = Direction.values();       //The directions by ordinal.
+    private static final int RANDOM_PICK = 1 << 4;                          //The bit of the entries that pick a candidate at random.
+    private static final int[] ENTRIES = new int[DIRECTIONS.length << 8];   //The entries by incoming direction ordinal x 256 + passability mask.
+
+    static {
+        for(int d=0; d<DIRECTIONS.length; d++){
+            for(int mask=0; mask<256; mask++){
+                ENTRIES[(d << 8) | mask] = createEntry(mask, DIRECTIONS[d]);
+            }
+        }
+    }
+
+    private BounceTable(){}
+
+    /**
+     * Look up the bounce of an enemy.
+     * @param mask The passability mask of the tiles around the enemy, from GridMap.getPassableMask.
+     * @param incoming The direction the enemy was going to move in.
+     * @return The packed entry.
+     */
+    public static int lookup(int mask, Direction incoming){
+        return ENTRIES[(incoming.ordinal() << 8) | (mask & 0xFF)];
+    }
+
+    /**
+     * Get the number of candidates of an entry.
+     * @param entry The packed entry.
+     * @return The number of candidates, 0 if the enemy is stuck.
+     */
+    public static int getCount(int entry){
+        return entry & 0xF;
+    }
+
+    /**
+     * Check if the bounce is picked at random from the candidates.
+     * @param entry The packed entry.
+     * @return Return true if a random number is needed to pick the candidate.
+     */
+    public static boolean isRandomPick(int entry){
+        return (entry & RANDOM_PICK) != 0;
+    }
+
+    /**
+     * Get a candidate of an entry.
+     * @param entry The packed entry.
+     * @param k The candidate index, from 0 to the count - 1.
+     * @return The candidate direction.
+     */
+    public static Direction getCandidate(int entry, int k){
+        return DIRECTIONS[(entry >>> (8 + 4 * k)) & 0xF];
+    }
+
+    /**
+     * Work out the bounce of one case, the same way enemies have always bounced.
+     * The open diagonal tiles are the choices, a diagonal is removed if the tile on its side the enemy was not blocked by is open.
+     * If one choice is left it is taken, if none is left the enemy goes back, otherwise it picks one that does not go back.
+     * @param mask The passability mask of the tiles around the enemy.
+     * @param incoming The direction the enemy was going to move in.
+     * @return The packed entry.
+     */
+    private static int createEntry(int mask, Direction incoming){
+        //Get the list of diagonal directions that is open around the enemy.
+        ArrayList<Direction> possibleNextDirections = new ArrayList<Direction>();
+        for (Direction diagonal : Direction.DIAGONAL) {
+            if((mask & (1 << diagonal.ordinal())) != 0){ possibleNextDirections.add(diagonal); }
+        }
+        //If there is no choice, means enemy is stuck.
+        if(possibleNextDirections.size() == 0){ return 0; }
+
+        //Remove the possible directions according to walls absence on any perpendicular direction.
+        Direction[] separate = incoming.getSeparate();
+        if(separate != null){
+            for (Direction collision : separate) {
+                if((mask & (1 << collision.ordinal())) == 0){ continue; }
+                //If there is no wall on the top, the bottom diagonal direction is not possible.
+                if(collision == Direction.UP){
+                    possibleNextDirections.remove(Direction.BOTTOMLEFT);
+                    possibleNextDirections.remove(Direction.BOTTOMRIGHT);
+                }
+                //If there is no wall on the bottom, the top diagonal direction is not possible.
+                if(collision == Direction.DOWN){
+                    possibleNextDirections.remove(Direction.TOPLEFT);
+                    possibleNextDirections.remove(Direction.TOPRIGHT);
+                }
+                //If there is no wall on the left, the right diagonal direction is not possible.
+                if(collision == Direction.LEFT){
+                    possibleNextDirections.remove(Direction.TOPRIGHT);
+                    possibleNextDirections.remove(Direction.BOTTOMRIGHT);
+                }
+                //If there is no wall on the right, the left diagonal direction is not possible.
+                if(collision == Direction.RIGHT){
+                    possibleNextDirections.remove(Direction.TOPLEFT);
+                    possibleNextDirections.remove(Direction.BOTTOMLEFT);
+                }
+            }
+        }
+
+        int entry = 0;
+        if(possibleNextDirections.size() == 0){
+            //If there is no choice, the enemy is hitting an angle and goes back.
+            possibleNextDirections.add(incoming.getOpposite());
+        }else if(possibleNextDirections.size() > 1){
+            //If there are more than one choice, remove the opposite direction and random pick one.
+            possibleNextDirections.remove(incoming.getOpposite());
+            entry |= RANDOM_PICK;
+        }
+        entry |= possibleNextDirections.size();
+        for(int k=0; k<possibleNextDirections.size(); k++){
+            entry |= possibleNextDirections.get(k).ordinal() << (8 + 4 * k);
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,181 @@
+package lawnlayer.GameObjects;
+
+import java.util.Arrays;
+
+import lawnlayer.GeneralClass.IntDeque;
+
+/**
+ * This stores the tile labels of a grid map in square chunks.
+ * A chunk where every tile has the same label is stored as that one label, and only gets a byte per tile once a different label is written into it.
+ * When a chunk becomes uniform again, its tiles are dropped. So big maps made of large walls or filled areas take very little memory.
+ * Tiles are addressed with the same packed index as the grid map, y * width + x.
+ */
+public class ChunkedTileStorage {
+
+    public static final int CHUNK_SHIFT = 6;                    //The chunks are 2^6 = 64 tiles wide and high.
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;      //The width and height of a chunk in tiles.
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;       //The mask to get the position inside a chunk.
+
+    private int width;                  //The width of the map in tiles.
+    private int height;                 //The height of the map in tiles.
+    private int chunksX;                //The number of chunks in a row.
+    private int chunksY;                //The number of chunks in a column.
+    private int labelTypes;             //The number of different labels that can be stored.
+    private byte[] uniformLabels;       //The label of each uniform chunk.
+    private byte[][] chunkTiles;        //The tiles of each mixed chunk, null if the chunk is uniform.
+    private int[] chunkLabelCounts;     //The number of tiles of each label in each chunk, indexed by chunk * labelTypes + label.
+    private int[] chunkAreas;           //The number of map tiles in each chunk.
+
+    /**
+     * Create a storage where every tile has the same label.
+     * @param width Map width.
+     * @param height Map height.
+     * @param labelTypes The number of different labels, labels are from 0 to labelTypes - 1.
+     * @param label The label of every tile.
+     */
+    public ChunkedTileStorage(int width, int height, int labelTypes, byte label){
+        this.width = width;
+        this.height = height;
+        this.labelTypes = labelTypes;
+        this.chunksX = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.chunksY = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+        uniformLabels = new byte[chunksX * chunksY];
+        chunkTiles = new byte[chunksX * chunksY][];
+        chunkLabelCounts = new int[chunksX * chunksY * labelTypes];
+        chunkAreas = new int[chunksX * chunksY];
+        Arrays.fill(uniformLabels, label);
+        for(int chunk = 0; chunk < uniformLabels.length; chunk++){
+            //Chunks on the right and bottom edge can be cut by the map border.
+            int left = (chunk % chunksX) << CHUNK_SHIFT;
+            int top = (chunk / chunksX) << CHUNK_SHIFT;
+            chunkAreas[chunk] = (Math.min(left + CHUNK_SIZE, width) - left) * (Math.min(top + CHUNK_SIZE, height) - top);
+            chunkLabelCounts[chunk * labelTypes + label] = chunkAreas[chunk];
+        }
+    }
+
+    /**
+     * Get the label of a tile.
+     * @param index The tile index, y * width + x.
+     * @return The label of the tile.
+     */
+    public byte get(int index){
+        int y = index / width;
+        int x = index - y * width;
+        int chunk = (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT);
+        byte[] tiles = chunkTiles[chunk];
+        if(tiles == null){ return uniformLabels[chunk]; }
+        return tiles[((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)];
+    }
+
+    /**
+     * Set the label of a tile. A uniform chunk gets its own tiles if the label is different.
+     * @param index The tile index, y * width + x.
+     * @param label The new label.
+     * @return The old label of the tile.
+     */
+    public byte set(int index, byte label){
+        int y = index / width;
+        int x = index - y * width;
+        int chunk = (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT);
+        byte[] tiles = chunkTiles[chunk];
+        byte oldLabel;
+        if(tiles == null){
+            oldLabel = uniformLabels[chunk];
+            if(oldLabel == label){ return oldLabel; }
+            //A different label is written into a uniform chunk, give the chunk its own tiles.
+            tiles = new byte[CHUNK_SIZE * CHUNK_SIZE];
+            Arrays.fill(tiles, oldLabel);
+            chunkTiles[chunk] = tiles;
+        }
+        int local = ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+        oldLabel = tiles[local];
+        if(oldLabel == label){ return oldLabel; }
+        tiles[local] = label;
+        chunkLabelCounts[chunk * labelTypes + oldLabel]--;
+        chunkLabelCounts[chunk * labelTypes + label]++;
+        //If the whole chunk has the new label now, drop its tiles.
+        if(chunkLabelCounts[chunk * labelTypes + label] == chunkAreas[chunk]){
+            chunkTiles[chunk] = null;
+            uniformLabels[chunk] = label;
+        }
+        return oldLabel;
+    }
+
+    /**
+     * Get the number of chunks.
+     * @return The number of chunks.
+     */
+    public int getChunkCount(){
+        return uniformLabels.length;
+    }
+
+    /**
+     * Get the number of tiles with the label in a chunk.
+     * @param chunk The chunk index.
+     * @param label The label.
+     * @return The number of tiles.
+     */
+    public int getChunkLabelCount(int chunk, int label){
+        return chunkLabelCounts[chunk * labelTypes + label];
+    }
+
+    /**
+     * Get the number of chunks that have their own tiles.
+     * @return The number of mixed chunks.
+     */
+    public int getMixedChunkCount(){
+        int count = 0;
+        for(int chunk = 0; chunk < chunkTiles.length; chunk++){
+            if(chunkTiles[chunk] != null){ count++; }
+        }
+        return count;
+    }
+
+    /**
+     * Find a tile with the label in a chunk.
+     * @param chunk The chunk index.
+     * @param label The label.
+     * @param n Which of the matching tiles to find, from 0 to the label count of the chunk - 1. Counted row by row.
+     * @return The tile index, y * width + x, or -1 if there are not enough matching tiles.
+     */
+    public int findTile(int chunk, int label, int n){
+        int left = (chunk % chunksX) << CHUNK_SHIFT;
+        int top = (chunk / chunksX) << CHUNK_SHIFT;
+        int right = Math.min(left + CHUNK_SIZE, width);
+        int bottom = Math.min(top + CHUNK_SIZE, height);
+        byte[] tiles = chunkTiles[chunk];
+        for(int y = top; y < bottom; y++){
+            for(int x = left; x < right; x++){
+                int tileLabel = tiles == null ? uniformLabels[chunk] : tiles[((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)];
+                if(tileLabel == label){
+                    if(n == 0){ return y * width + x; }
+                    n--;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add all tiles with the label in a chunk to the result.
+     * @param chunk The chunk index.
+     * @param label The label.
+     * @param result The deque to add the tile indices to, y * width + x.
+     */
+    public void collectTiles(int chunk, int label, IntDeque result){
+        if(chunkLabelCounts[chunk * labelTypes + label] == 0){ return; }
+        int left = (chunk % chunksX) << CHUNK_SHIFT;
+        int top = (chunk / chunksX) << CHUNK_SHIFT;
+        int right = Math.min(left + CHUNK_SIZE, width);
+        int bottom = Math.min(top + CHUNK_SIZE, height);
+        byte[] tiles = chunkTiles[chunk];
+        for(int y = top; y < bottom; y++){
+            for(int x = left; x < right; x++){
+                int tileLabel = tiles == null ? uniformLabels[chunk] : tiles[((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)];
+                if(tileLabel == label){
+                    result.addLast(y * width + x);
+                }
+            }
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package lawnlayer.GameObjects;
 
-import lawnlayer.App;
-import processing.core.PImage;
+import lawnlayer.GameSimulation;
 
 /**
  * This is a power up that can make enemy move slower.
@@ -10,8 +9,8 @@ public class EnemySlowPowerUp extends PowerUps{
 
     public static final int EFFECT_TIME = 6000; //Effect time in milliseconds.
 
-    public EnemySlowPowerUp(int gridPosX, int gridPosY, PImage sprite, App mainProgram) {
-        super(gridPosX, gridPosY, sprite, mainProgram);
+    public EnemySlowPowerUp(int gridPosX, int gridPosY, GameSimulation simulation) {
+        super(gridPosX, gridPosY, simulation);
     }
 
     /**
@@ -19,8 +18,8 @@ public class EnemySlowPowerUp extends PowerUps{
      */
     @Override
     public void onPlayerEat() {
-        this.mainProgram.enemiesChangeSpeed(2.5f, EFFECT_TIME);
+        this.simulation.enemiesChangeSpeed(2.5f, EFFECT_TIME);
         System.out.println("Enemy Slow Down Power Up Eaten.");
-        this.mainProgram.removePowerUps();
+        this.simulation.removePowerUps();
     }
 }
\ No newline at end of file
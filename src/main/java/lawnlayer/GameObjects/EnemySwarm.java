@@ -0,0 +1,679 @@
+package lawnlayer.GameObjects;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import lawnlayer.GlobalSettings;
+import lawnlayer.DataClass.EnemyType;
+import lawnlayer.GameObjectClass.GridObject;
+import lawnlayer.GameObjectClass.OccupancyGrid;
+import lawnlayer.GeneralClass.Color;
+import lawnlayer.GeneralClass.Direction;
+import lawnlayer.GeneralClass.IntDeque;
+import lawnlayer.GeneralClass.IntSet;
+import lawnlayer.GeneralClass.TileLabel;
+
+/**
+ * Represents all the enemies of a level, stored in parallel arrays instead of one object per enemy.
+ * Enemy number i is the i-th entry of every array. The enemies bounce off walls, eat filled tiles and make red paths on the player's path.
+ * The enemies due to move on a tick are kept in a ring of buckets, so a tick only goes through the enemies that move in it,
+ * in one loop without any virtual calls. This lets a level have tens of thousands of enemies.
+ */
+public class EnemySwarm {
+
+    private static final Direction[] DIRECTIONS = Direction.values();       //The directions by their index, the arrays store the index.
+    private static final byte NONE = (byte)Direction.NONE.ordinal();        //The index of the stopped direction.
+    private static final TileLabel[] TILE_LABELS = TileLabel.values();      //The tile labels by index, the tile buffers store the index.
+    private static final int BUCKET_COUNT = 256;                            //The number of buckets in the ring, a power of two.
+    private static final int WORKERS_PER_THREAD = 4;                        //More workers than threads, so a slow worker does not hold up the rest.
+    public static final float SECONDS_PER_TILE = 0.16f;                     //The second to wait before moving one tile unit. (Default speed) 2PX PER FRAME = 10 FRAME PER TILE = 0.16 SEC PER TILE.
+    public static final float MOVEMENT_SMOOTHNESS = 5.8f;                   //The value that control the smoothness of the movement.
+
+    private GridMap gridMap;                    //The grid map that the enemies are on.
+    private int size = 0;                       //The number of enemies.
+
+    private int[] gridPosX;                     //The position X on grid of each enemy.
+    private int[] gridPosY;                     //The position Y on grid of each enemy.
+    private byte[] currentDirection;            //The direction of each enemy in the current grid movement.
+    private byte[] nextDirection;               //The direction of each enemy in the next grid movement.
+    private float[] secondsPerTile;             //The seconds each enemy waits before moving one tile unit.
+    private int[] ticksPerTile;                 //The ticks each enemy waits before moving one tile unit, worked out from the seconds.
+    private long[] nextMovementTick;            //The tick each enemy moves on next.
+    private int[] flags;                        //The capability flags of each enemy, copied from its type.
+    private int[] moveableMask;                 //The tile labels each enemy can move on, one bit per label, copied from its type.
+    private EnemyType[] type;                   //The shared enemy type of each enemy, used by the renderer to pick the sprite.
+    private int[] screenX;                      //The position X on screen of each enemy, slid towards the next tile by the renderer.
+    private int[] screenY;                      //The position Y on screen of each enemy, slid towards the next tile by the renderer.
+
+    private IntDeque[] dueBuckets = new IntDeque[BUCKET_COUNT];             //The enemies waiting in each bucket, an enemy waits in the bucket of its next movement tick.
+    private long currentTick = 0;                                           //The number of ticks since the swarm was created.
+    private Color tintColor = Color.WHITE;                                  //The tint of all the enemies.
+
+    private int[] dueEnemies = new int[64];                                 //The enemies that move in this tick, in order.
+    private int dueCount = 0;                                               //The number of enemies that move in this tick.
+    private int[] pendingBounces = new int[64];                             //The bounce table entry to pick from at random for each due enemy, 0 if there is no pick.
+    private boolean[] hasMoved = new boolean[64];                           //If each due enemy has moved to a new tile in this tick.
+    private byte[] checkedDirections = new byte[64];                        //The next direction of each due enemy before its collisions were checked, to check them again.
+    private int[] writeEnds = new int[64];                                  //The size of the tile buffer of its worker after each due enemy, so the writes of one enemy can be found.
+    private IntDeque[] writeBuffers = new IntDeque[]{ new IntDeque() };     //The tiles each worker changes in this tick, as pairs of the tile index and the new label.
+    private IntDeque replayWrites = new IntDeque();                         //The tiles changed by an enemy whose collisions are checked again on the calling thread.
+    private IntSet changedTiles = new IntSet(64);                           //The tiles the enemies changed so far in this tick.
+    private int workerCount = 1;                                            //The number of workers in this tick.
+    private int parallelThreshold = GlobalSettings.getSession().getParallelEnemyThreshold();  //Ticks that move more enemies than this move them in parallel.
+
+    /**
+     * Create an empty swarm on a grid map. The map counts the enemies of the swarm in its occupancy index.
+     * @param gridMap The grid map reference.
+     * @param capacity The number of enemies expected, the arrays grow if more are added.
+     */
+    public EnemySwarm(GridMap gridMap, int capacity){
+        this.gridMap = gridMap;
+        capacity = Math.max(capacity, 1);
+        gridPosX = new int[capacity];
+        gridPosY = new int[capacity];
+        currentDirection = new byte[capacity];
+        nextDirection = new byte[capacity];
+        secondsPerTile = new float[capacity];
+        ticksPerTile = new int[capacity];
+        nextMovementTick = new long[capacity];
+        flags = new int[capacity];
+        moveableMask = new int[capacity];
+        type = new EnemyType[capacity];
+        screenX = new int[capacity];
+        screenY = new int[capacity];
+        for(int i=0; i<BUCKET_COUNT; i++){
+            dueBuckets[i] = new IntDeque();
+        }
+        gridMap.setEnemySwarm(this);
+    }
+
+    /**
+     * Add an enemy to the swarm. It starts on a random diagonal direction, and moves one full movement time after now.
+     * @param type The enemy type.
+     * @param gridPosX The position X on grid.
+     * @param gridPosY The position Y on grid.
+     * @return The index of the new enemy.
+     */
+    public int add(EnemyType type, int gridPosX, int gridPosY){
+        if(size == this.gridPosX.length){ grow(); }
+        int i = size++;
+        this.type[i] = type;
+        this.gridPosX[i] = gridPosX;
+        this.gridPosY[i] = gridPosY;
+        this.screenX[i] = GridObject.toScreenX(gridPosX);
+        this.screenY[i] = GridObject.toScreenY(gridPosY);
+        //The hot checks read the copies in the arrays instead of the type.
+        this.flags[i] = type.getFlags();
+        this.moveableMask[i] = type.getMoveableMask();
+        this.currentDirection[i] = NONE;
+        this.nextDirection[i] = (byte)Direction.DIAGONAL[gridMap.getRandom().nextInt(4)].ordinal();
+        this.secondsPerTile[i] = SECONDS_PER_TILE;
+        this.ticksPerTile[i] = toTicksPerTile(SECONDS_PER_TILE);
+        this.nextMovementTick[i] = currentTick + this.ticksPerTile[i];
+        dueBuckets[(int)(nextMovementTick[i] & (BUCKET_COUNT - 1))].addLast(i);
+
+        //Let the map know where the enemy is standing.
+        gridMap.getEnemyOccupancy().addCount(gridPosX, gridPosY);
+        return i;
+    }
+
+    /**
+     * Move the swarm one tick forward. The enemies due on this tick move one tile, one after another in the order of the enemies.
+     * When a tick moves more enemies than the parallel threshold, the movements are worked out in two steps instead:
+     * first every due enemy moves and decides its bounce on the workers, only reading the map as it was at the start of the tick
+     * and writing the tiles it eats or turns red into the buffer of its worker. Then the buffers are applied in the order of the enemies
+     * on the calling thread. An enemy next to a tile that an earlier enemy changed in this tick read an old tile,
+     * so its collisions are checked again against the map as it is now. Either way the result is the same as moving the enemies one by one.
+     */
+    public void tick(){
+        currentTick++;
+        IntDeque bucket = dueBuckets[(int)(currentTick & (BUCKET_COUNT - 1))];
+
+        //Take the enemies that move now out of the bucket, in order. The ones due on a later turn of the ring stay.
+        dueCount = 0;
+        int waiting = bucket.size();
+        for(int k=0; k<waiting; k++){
+            int i = bucket.pollFirst();
+            if(nextMovementTick[i] <= currentTick){
+                if(dueCount == dueEnemies.length){
+                    dueEnemies = Arrays.copyOf(dueEnemies, dueCount * 2);
+                    pendingBounces = Arrays.copyOf(pendingBounces, dueCount * 2);
+                    hasMoved = Arrays.copyOf(hasMoved, dueCount * 2);
+                    checkedDirections = Arrays.copyOf(checkedDirections, dueCount * 2);
+                    writeEnds = Arrays.copyOf(writeEnds, dueCount * 2);
+                }
+                dueEnemies[dueCount++] = i;
+            }else{
+                bucket.addLast(i);
+            }
+        }
+        if(dueCount == 0){ return; }
+
+        //Split the due enemies between the workers, one worker is run on this thread.
+        workerCount = 1;
+        if(dueCount > parallelThreshold){
+            workerCount = Math.min(dueCount, ForkJoinPool.getCommonPoolParallelism() * WORKERS_PER_THREAD);
+        }
+        if(writeBuffers.length < workerCount){
+            int oldLength = writeBuffers.length;
+            writeBuffers = Arrays.copyOf(writeBuffers, workerCount);
+            for(int w=oldLength; w<workerCount; w++){ writeBuffers[w] = new IntDeque(); }
+        }
+        changedTiles.clear();
+        if(workerCount == 1){
+            //Each enemy sees the tiles changed by the enemies before it straight away.
+            for(int k=0; k<dueCount; k++){
+                replayWrites.clear();
+                gridMovement(k, replayWrites);
+                applyTileWrites(replayWrites, 0, replayWrites.size());
+            }
+        }else{
+            ForkJoinPool.commonPool().invoke(new MoveEnemiesTask(0, workerCount));
+            //Apply the results in the order of the enemies.
+            mergeWorkers();
+        }
+        finishMovements();
+    }
+
+    /**
+     * The fork join task that moves the enemies of a range of workers, split in half until one worker is left.
+     */
+    private class MoveEnemiesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int first;              //The first worker to run.
+        private int last;               //The last worker to run, excluded.
+
+        MoveEnemiesTask(int first, int last){
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute(){
+            if(last - first == 1){
+                moveEnemies(first);
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            invokeAll(new MoveEnemiesTask(first, middle), new MoveEnemiesTask(middle, last));
+        }
+    }
+
+    /**
+     * Move the due enemies of a worker. Each worker has its own part of the due enemies and its own tile buffer,
+     * the map and the occupancy index are only read.
+     * @param worker The worker index.
+     */
+    private void moveEnemies(int worker){
+        IntDeque writes = writeBuffers[worker];
+        writes.clear();
+        int start = (int)((long)dueCount * worker / workerCount);
+        int end = (int)((long)dueCount * (worker + 1) / workerCount);
+        for(int k=start; k<end; k++){
+            gridMovement(k, writes);
+            writeEnds[k] = writes.size();
+        }
+    }
+
+    /**
+     * Move a due enemy one tile in the grid with its current direction, and check the collisions at the new position.
+     * If the enemy is going to move out of map, it is stopped instead. The next direction is taken in finishMovements.
+     * @param k The position of the enemy in the due enemies.
+     * @param writes The tile buffer of the worker.
+     */
+    private void gridMovement(int k, IntDeque writes){
+        int i = dueEnemies[k];
+        pendingBounces[k] = 0;
+        hasMoved[k] = false;
+
+        //If the enemy is going to move out of map, stop the enemy.
+        if(isOutOfMap(i, currentDirection[i])){ stop(i); }
+
+        //If current direction is not none, move the enemy and check the collisions.
+        if(currentDirection[i] != NONE){
+            Direction direction = DIRECTIONS[currentDirection[i]];
+            gridPosX[i] += direction.X;
+            gridPosY[i] += direction.Y;
+            screenX[i] = GridObject.toScreenX(gridPosX[i]);
+            screenY[i] = GridObject.toScreenY(gridPosY[i]);
+            hasMoved[k] = true;
+            checkedDirections[k] = nextDirection[i];
+            checkCollisions(k, writes);
+        }
+    }
+
+    /**
+     * Check the collisions of a due enemy that has moved: bounce off the walls, then eat filled tiles and make red paths.
+     * @param k The position of the enemy in the due enemies.
+     * @param writes The tile buffer to write the changed tiles to.
+     */
+    private void checkCollisions(int k, IntDeque writes){
+        int i = dueEnemies[k];
+        if(checkWallCollision(k)){
+            checkFillCollision(i, writes);
+            checkPathCollision(i, writes);
+        }
+    }
+
+    /**
+     * Apply the tile buffers of the workers, one enemy at a time in the order of the enemies.
+     * The enemy read the tiles around it as they were at the start of the tick. If an earlier enemy changed one of them,
+     * the enemy is put back to how it was before its collisions and they are checked again against the map as it is now.
+     */
+    private void mergeWorkers(){
+        for(int w=0; w<workerCount; w++){
+            IntDeque writes = writeBuffers[w];
+            int start = (int)((long)dueCount * w / workerCount);
+            int end = (int)((long)dueCount * (w + 1) / workerCount);
+            int writeStart = 0;
+            for(int k=start; k<end; k++){
+                if(hasMoved[k] && isNearChangedTile(dueEnemies[k])){
+                    nextDirection[dueEnemies[k]] = checkedDirections[k];
+                    pendingBounces[k] = 0;
+                    replayWrites.clear();
+                    checkCollisions(k, replayWrites);
+                    applyTileWrites(replayWrites, 0, replayWrites.size());
+                }else{
+                    applyTileWrites(writes, writeStart, writeEnds[k]);
+                }
+                writeStart = writeEnds[k];
+            }
+            writes.clear();
+        }
+    }
+
+    /**
+     * Check if any tile an enemy reads in its collisions has been changed in this tick. The enemy only reads the tiles around it.
+     * @param i The enemy index.
+     * @return Return true if one of the tiles around the enemy, or under it, has been changed.
+     */
+    private boolean isNearChangedTile(int i){
+        if(changedTiles.isEmpty()){ return false; }
+        for(int y = gridPosY[i] - 1; y <= gridPosY[i] + 1; y++){
+            for(int x = gridPosX[i] - 1; x <= gridPosX[i] + 1; x++){
+                if(!gridMap.isOutOfMap(x, y) && changedTiles.contains(y * gridMap.getWidth() + x)){ return true; }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Apply a part of a tile buffer to the map. A tile that is no longer the label it was read as is skipped.
+     * The changed tiles are recorded, so the enemies after can tell if they read an old tile.
+     * @param writes The tile buffer.
+     * @param from The first value of the part, included.
+     * @param to The last value of the part, excluded.
+     */
+    private void applyTileWrites(IntDeque writes, int from, int to){
+        for(int n=from; n<to; n+=2){
+            int index = writes.get(n);
+            int x = index % gridMap.getWidth();
+            int y = index / gridMap.getWidth();
+            TileLabel tile = TILE_LABELS[writes.get(n + 1)];
+            //Filled tiles are eaten into empty tiles, and green paths turn red.
+            TileLabel expected = tile == TileLabel.EMPTY ? TileLabel.FILLED : TileLabel.PATH_G;
+            if(gridMap.getTile(x, y) == expected){
+                gridMap.setTile(x, y, tile);
+                changedTiles.add(index);
+            }
+        }
+    }
+
+    /**
+     * Finish the movements of the due enemies in order: pick the random bounces, update the occupancy index,
+     * take the next direction and wait for the next movement.
+     */
+    private void finishMovements(){
+        OccupancyGrid occupancy = gridMap.getEnemyOccupancy();
+        for(int k=0; k<dueCount; k++){
+            int i = dueEnemies[k];
+
+            //Pick one of the bounce directions with the random source of the map, in the order of the enemies.
+            int entry = pendingBounces[k];
+            if(entry != 0){
+                int pick = gridMap.getRandom().nextInt(BounceTable.getCount(entry));
+                nextDirection[i] = (byte)BounceTable.getCandidate(entry, pick).ordinal();
+            }
+
+            //The enemy has left the tile it came from.
+            if(hasMoved[k]){
+                Direction direction = DIRECTIONS[currentDirection[i]];
+                occupancy.removeCount(gridPosX[i] - direction.X, gridPosY[i] - direction.Y);
+                occupancy.addCount(gridPosX[i], gridPosY[i]);
+            }
+
+            //Set the current direction next direction.
+            currentDirection[i] = nextDirection[i];
+            //Stop now if the new direction leads out of map.
+            if(isOutOfMap(i, currentDirection[i])){ stop(i); }
+
+            nextMovementTick[i] = currentTick + ticksPerTile[i];
+            dueBuckets[(int)(nextMovementTick[i] & (BUCKET_COUNT - 1))].addLast(i);
+        }
+    }
+
+    /**
+     * Check if the enemy is going to collide with green path, and put a red path at the collision point.
+     * @param i The enemy index.
+     * @param writes The tile buffer of the worker.
+     */
+    private void checkPathCollision(int i, IntDeque writes){
+        //Return if red path can not be made.
+        if((flags[i] & EnemyType.CAN_MAKE_RED_PATH) == 0){ return; }
+
+        Direction cDirection = DIRECTIONS[currentDirection[i]];
+        int nextGridPosX = gridPosX[i] + cDirection.X;
+        int nextGridPosY = gridPosY[i] + cDirection.Y;
+        if(!gridMap.isOutOfMap(nextGridPosX, nextGridPosY) && gridMap.getTile(nextGridPosX, nextGridPosY) == TileLabel.PATH_G){
+            writes.addLast(nextGridPosY * gridMap.getWidth() + nextGridPosX);
+            writes.addLast(TileLabel.PATH_R.ordinal());
+        }
+    }
+
+    /**
+     * Check if the enemy is going to collide with filled tile, and turn it back to empty.
+     * The diagonal tile is only eaten if there is no filled tile on the sides.
+     * @param i The enemy index.
+     * @param writes The tile buffer of the worker.
+     */
+    private void checkFillCollision(int i, IntDeque writes){
+        //Return if enemy can not eat filled tiles.
+        if((flags[i] & EnemyType.CAN_EAT_FILLED_TILE) == 0){ return; }
+        boolean hasEatenTile = false;
+        Direction cDirection = DIRECTIONS[currentDirection[i]];
+        Direction[] separate = cDirection.getSeparate();
+        for(int d=0; d<separate.length; d++){
+            if(eatFilledTile(gridPosX[i] + separate[d].X, gridPosY[i] + separate[d].Y, writes)){ hasEatenTile = true; }
+        }
+        //Eat diagonal tile only if there is no collision on the side.
+        if(!hasEatenTile){
+            eatFilledTile(gridPosX[i] + cDirection.X, gridPosY[i] + cDirection.Y, writes);
+        }
+    }
+
+    /**
+     * Turn a filled tile back to empty.
+     * @param x Position X.
+     * @param y Position Y.
+     * @param writes The tile buffer of the worker.
+     * @return Return true if the tile was filled.
+     */
+    private boolean eatFilledTile(int x, int y, IntDeque writes){
+        if(!gridMap.isOutOfMap(x, y) && gridMap.getTile(x, y) == TileLabel.FILLED){
+            writes.addLast(y * gridMap.getWidth() + x);
+            writes.addLast(TileLabel.EMPTY.ordinal());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check if the enemy is going to collide with a wall, and look up the directions to bounce to.
+     * If there is one choice it is taken now, otherwise the table entry is kept for finishMovements to pick from.
+     * @param k The position of the enemy in the due enemies.
+     * @return Return false if the enemy is stuck and stops.
+     */
+    private boolean checkWallCollision(int k){
+        int i = dueEnemies[k];
+        Direction nDirection = DIRECTIONS[nextDirection[i]];
+        int nextGridPosX = gridPosX[i] + nDirection.X;
+        int nextGridPosY = gridPosY[i] + nDirection.Y;
+
+        //When the enemy is going to touch the wall.
+        if(gridMap.isOutOfMap(nextGridPosX, nextGridPosY) || !isMoveableArea(i, gridMap.getTile(nextGridPosX, nextGridPosY))){
+
+            //Look up the bounce from the open tiles around the enemy.
+            int entry = BounceTable.lookup(gridMap.getPassableMask(gridPosX[i], gridPosY[i], moveableMask[i]), nDirection);
+            //If there is no choice, means enemy is stuck, stop.
+            if(BounceTable.getCount(entry) == 0){ nextDirection[i] = NONE; return false; }
+            if(BounceTable.isRandomPick(entry)){
+                //The random pick is left to finishMovements, so the random numbers are used in the order of the enemies.
+                pendingBounces[k] = entry;
+            }else{
+                nextDirection[i] = (byte)BounceTable.getCandidate(entry, 0).ordinal();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Slide an enemy on screen towards its next tile. Is called by the renderer every frame.
+     * @param i The enemy index.
+     */
+    public void smoothMovement(int i){
+        //Stop smoothing if the enemy is going to stop at the edge of the map.
+        if(isOutOfMap(i, currentDirection[i])){ return; }
+        Direction direction = DIRECTIONS[currentDirection[i]];
+        int deltaX = GridObject.toScreenX(gridPosX[i] + direction.X) - screenX[i];
+        int deltaY = GridObject.toScreenY(gridPosY[i] + direction.Y) - screenY[i];
+        screenX[i] += (int)((float)deltaX / MOVEMENT_SMOOTHNESS);
+        screenY[i] += (int)((float)deltaY / MOVEMENT_SMOOTHNESS);
+    }
+
+    /**
+     * Check if the tile label is an area for the enemy to move.
+     * @param i The enemy index.
+     * @param checkTile The tile to check.
+     * @return Return true if the enemy can move on the tile.
+     */
+    public boolean isMoveableArea(int i, TileLabel checkTile){
+        return (moveableMask[i] & (1 << checkTile.ordinal())) != 0;
+    }
+
+    /**
+     * If the enemy keeps moving on the direction, will it move out of map?
+     * @param i The enemy index.
+     * @param direction The index of the direction.
+     * @return Return true if the next tile is out of map.
+     */
+    private boolean isOutOfMap(int i, byte direction){
+        Direction d = DIRECTIONS[direction];
+        return gridMap.isOutOfMap(gridPosX[i] + d.X, gridPosY[i] + d.Y);
+    }
+
+    /**
+     * Turn seconds per tile into the number of ticks between two movements, the same way as the dynamic object.
+     * @param seconds Seconds per tile.
+     * @return The ticks per tile, at least 1.
+     */
+    private static int toTicksPerTile(float seconds){
+        return (int)(seconds * (float)GlobalSettings.getSession().getTickRate()) + 1;
+    }
+
+    /**
+     * Make all the arrays twice as long.
+     */
+    private void grow(){
+        int capacity = gridPosX.length * 2;
+        gridPosX = Arrays.copyOf(gridPosX, capacity);
+        gridPosY = Arrays.copyOf(gridPosY, capacity);
+        currentDirection = Arrays.copyOf(currentDirection, capacity);
+        nextDirection = Arrays.copyOf(nextDirection, capacity);
+        secondsPerTile = Arrays.copyOf(secondsPerTile, capacity);
+        ticksPerTile = Arrays.copyOf(ticksPerTile, capacity);
+        nextMovementTick = Arrays.copyOf(nextMovementTick, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        moveableMask = Arrays.copyOf(moveableMask, capacity);
+        type = Arrays.copyOf(type, capacity);
+        screenX = Arrays.copyOf(screenX, capacity);
+        screenY = Arrays.copyOf(screenY, capacity);
+    }
+
+    /**
+     * Set the speed of all the enemies. The next movement of each enemy is moved to match the new speed, counted from its last movement.
+     * @param secondsPerTile Seconds to move a tile unit.
+     */
+    public void setSecondsPerTile(float secondsPerTile){
+        int ticks = toTicksPerTile(secondsPerTile);
+        for(int i=0; i<size; i++){
+            long lastMovementTick = nextMovementTick[i] - ticksPerTile[i];
+            this.secondsPerTile[i] = secondsPerTile;
+            this.ticksPerTile[i] = ticks;
+            nextMovementTick[i] = Math.max(lastMovementTick + ticks, currentTick + 1);
+        }
+        //Put every enemy in the bucket of its new tick, in order.
+        for(int b=0; b<BUCKET_COUNT; b++){
+            dueBuckets[b].clear();
+        }
+        for(int i=0; i<size; i++){
+            dueBuckets[(int)(nextMovementTick[i] & (BUCKET_COUNT - 1))].addLast(i);
+        }
+    }
+
+    /**
+     * Set the number of enemies a tick must move before they are moved in parallel. The result is the same either way.
+     * @param parallelThreshold The number of enemies, 0 always moves them in parallel.
+     */
+    public void setParallelThreshold(int parallelThreshold){
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Set the position of an enemy on grid as well as on screen, and update the occupancy index.
+     * @param i The enemy index.
+     * @param x Position X on grid.
+     * @param y Position Y on grid.
+     */
+    public void setGridPos(int i, int x, int y){
+        OccupancyGrid occupancy = gridMap.getEnemyOccupancy();
+        occupancy.removeCount(gridPosX[i], gridPosY[i]);
+        gridPosX[i] = x;
+        gridPosY[i] = y;
+        occupancy.addCount(x, y);
+        screenX[i] = GridObject.toScreenX(x);
+        screenY[i] = GridObject.toScreenY(y);
+    }
+
+    /**
+     * Stop an enemy.
+     * @param i The enemy index.
+     */
+    public void stop(int i){
+        currentDirection[i] = NONE;
+        nextDirection[i] = NONE;
+    }
+
+    /**
+     * Get the number of enemies.
+     * @return The number of enemies.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Get the position X on grid of an enemy.
+     * @param i The enemy index.
+     * @return Position X on grid.
+     */
+    public int getGridPosX(int i){
+        return gridPosX[i];
+    }
+
+    /**
+     * Get the position Y on grid of an enemy.
+     * @param i The enemy index.
+     * @return Position Y on grid.
+     */
+    public int getGridPosY(int i){
+        return gridPosY[i];
+    }
+
+    /**
+     * Get the position X on screen of an enemy.
+     * @param i The enemy index.
+     * @return Position X on screen in pixel.
+     */
+    public int getX(int i){
+        return screenX[i];
+    }
+
+    /**
+     * Get the position Y on screen of an enemy.
+     * @param i The enemy index.
+     * @return Position Y on screen in pixel.
+     */
+    public int getY(int i){
+        return screenY[i];
+    }
+
+    /**
+     * Get the direction of an enemy in the current grid movement.
+     * @param i The enemy index.
+     * @return The current direction.
+     */
+    public Direction getCurrentDirection(int i){
+        return DIRECTIONS[currentDirection[i]];
+    }
+
+    /**
+     * Get the direction of an enemy in the next grid movement.
+     * @param i The enemy index.
+     * @return The next direction.
+     */
+    public Direction getNextDirection(int i){
+        return DIRECTIONS[nextDirection[i]];
+    }
+
+    /**
+     * Get the speed of an enemy.
+     * @param i The enemy index.
+     * @return Seconds to move a tile unit.
+     */
+    public float getSecondsPerTile(int i){
+        return secondsPerTile[i];
+    }
+
+    /**
+     * Get the enemy type number from the config.
+     * @param i The enemy index.
+     * @return The enemy type number.
+     */
+    public int getType(int i){
+        return type[i].getId();
+    }
+
+    /**
+     * Get the shared enemy type.
+     * @param i The enemy index.
+     * @return The enemy type.
+     */
+    public EnemyType getEnemyType(int i){
+        return type[i];
+    }
+
+    /**
+     * Get the capability flags of an enemy.
+     * @param i The enemy index.
+     * @return The flags, EnemyType.CAN_MAKE_RED_PATH and EnemyType.CAN_EAT_FILLED_TILE.
+     */
+    public int getFlags(int i){
+        return flags[i];
+    }
+
+    /**
+     * Get the tint of all the enemies.
+     * @return The tint color.
+     */
+    public Color getTintColor(){
+        return tintColor;
+    }
+
+    /**
+     * Set the tint of all the enemies.
+     * @param tintColor The tint color.
+     */
+    public void setTintColor(Color tintColor){
+        this.tintColor = tintColor;
+    }
+
+    /**
+     * Get the grid map that the enemies are on.
+     * @return The grid map.
+     */
+    public GridMap getGridMap(){
+        return gridMap;
+    }
+}
@@ -1,12 +1,14 @@
 package lawnlayer.GameObjects;
 
-import processing.core.PApplet;
-import processing.core.PImage;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
 
-import lawnlayer.App;
 import lawnlayer.GlobalSettings;
+import lawnlayer.GameObjectClass.OccupancyGrid;
 import lawnlayer.GeneralClass.Direction;
+import lawnlayer.GeneralClass.IntDeque;
+import lawnlayer.GeneralClass.IntList;
+import lawnlayer.GeneralClass.IntSet;
 import lawnlayer.GeneralClass.TileLabel;
 import lawnlayer.GeneralClass.Vector2Int;
 
@@ -17,39 +19,72 @@ import lawnlayer.GeneralClass.Vector2Int;
  */
 public class GridMap{
 
-    private GridMapTile[][] gridMap;    //This is where the information of grid tiles is stored.
-    private PImage emptyImage;          //Reference of the empty grid texture.
-    private PImage filledImage;         //Reference of the filled grid texture.
-    private PImage solidImage;          //Reference of the solid grid texture.
-    private PImage pathGreenImage;      //Reference of the green path texture.
-    private PImage pathRedImage;        //Reference of the red path texture.
-
-    private int pathSpreadTimer = 0;    //Timer that record the frames before a spread of the red path tile.
-    private int framesPerTile = 3;      //Frames before the spread of a red path tile.
-    private App mainProgram;            //The main program reference to get enemies position.
-
-    //This is a list to store all the flood filled grid positions of the current flood fill session.
-    private ArrayList<Vector2Int> currentFloodFilledArea = new ArrayList<Vector2Int>();
-    //The list to record all the positions of path tiles the player creates on the map.
-    private ArrayList<Vector2Int> currentPathArea = new ArrayList<Vector2Int>();
+    private ChunkedTileStorage gridMap; //This is where the information of grid tiles is stored. Tile label ordinals indexed by y * width + x.
+    private int width;                  //The width of the map in tiles.
+    private int height;                 //The height of the map in tiles.
+
+    private boolean isLayerDirty = true;//If true, every tile is reported as changed to the renderer next time.
+    private boolean[] isTileDirty;      //Marks the tiles that changed since the renderer last asked, indexed by y * width + x. Created when a renderer first asks.
+    private IntDeque dirtyTiles = new IntDeque(256);    //The tiles that changed since the renderer last asked, packed as y * width + x.
+
+    private int pathSpreadTimer = 0;    //Timer that record the ticks before a spread of the red path tile.
+    private int ticksPerTile = 3;       //Simulation ticks before the spread of a red path tile.
+    private OccupancyGrid enemyOccupancy;   //The index of the enemies standing on each tile.
+    private EnemySwarm enemySwarm;          //The enemies stored in arrays on this map, null if there are none. They are counted in the occupancy index.
+    private Random random = new Random();   //The random numbers of everything on this map, seeded by the simulation so a game can be played again.
+
+    //All tile labels by ordinal, so a stored byte can be turned back into a label without allocating.
+    private static final TileLabel[] TILE_LABELS = TileLabel.values();
+    //The tile labels that only exist while the player is drawing a path or filling.
+    private static final TileLabel[] TEMPORARY_TILES = new TileLabel[]{ TileLabel.FLOODFILLED, TileLabel.PATH_G, TileLabel.PATH_R };
+    //The live number of tiles of each tile label in the map, indexed by tile label ordinal.
+    private int[] tileCounts = new int[TILE_LABELS.length];
+    //Maps with more tiles than this do not keep the position arrays below, they search the chunks of the storage instead.
+    public static final int POSITION_INDEX_MAX_TILES = 1 << 20;
+    private boolean isPositionIndexed;  //True if the position arrays below are kept for this map.
+    //The positions of the tiles of each tile label, packed as y * width + x. Only the first tileCounts entries of each array are used.
+    private int[][] labelTiles = new int[TILE_LABELS.length][];
+    //Where each tile is stored in the position array of its label, indexed by y * width + x.
+    private int[] labelTilePosition;
+    //Maps with more tiles than this do not keep the bit planes below, their queries read the tiles one by one.
+    public static final int BIT_PLANE_MAX_TILES = 1 << 24;
+    //The bit plane of each tile label, kept in sync with the stored labels. Null on maps bigger than the limit above.
+    private TileBitPlanes labelPlanes;
+    //A reusable list of tiles found when searching the chunks.
+    private IntDeque foundTiles = new IntDeque(256);
+
+    //This stores all the flood filled grid positions of the current flood fill session, packed as y * width + x.
+    private IntDeque currentFloodFilledArea = new IntDeque(256);
+    //The reusable work queue of the scanline flood fill, packed as y * width + x.
+    private IntDeque floodFillQueue = new IntDeque(256);
+    //The region label of each tile, indexed by y * width + x. Labels below captureFirstLabel belong to older captures. Created on the first capture.
+    private int[] regionLabels;
+    private int nextRegionLabel = 1;    //The label to give the next labeled region.
+    private int captureFirstLabel = 1;  //The first region label of the current capture.
+    private int regionLabel;            //The region label of the region being labeled.
+    private boolean isRegionClear;      //False if an enemy was found in the region being labeled.
+    //The tiles next to the path that have not started a region yet, for the capture spread over the ticks. Packed as y * width + x.
+    private IntDeque captureSeeds = new IntDeque(64);
+    //The tiles already added to the capture seeds. Path tiles next to each other share neighbours, so each tile is only seeded once.
+    private IntSet captureSeedSet = new IntSet(64);
+    private boolean isCapturing = false;        //True if a capture is spread over the ticks right now.
+    private boolean isRegionLabeling = false;   //True if the capture stopped in the middle of labeling a region.
+    private int commitPosition = -1;            //The next flood filled tile to set FILLED, -1 if no region is being filled.
+    private ParallelRegionLabeler parallelLabeler;  //Labels the captures that are too big for one thread. Created on the first big capture.
+    //The list to record all the positions of path tiles the player creates on the map, packed as y * width + x.
+    private IntList currentPathArea = new IntList(64);
+    //Where each tile is in the current path list, indexed by y * width + x. Only valid if the path entry points back to the tile. Created with the first path tile.
+    private int[] pathPosition;
+    //The red parts of the path that are still spreading. Stored as pairs of first and last path list index.
+    private IntDeque redPathFronts = new IntDeque(16);
     
     /**
-     * Create a grid map with the sprite references of different tiles.
-     * @param emptyImage        Reference of the empty grid texture.
-     * @param filledImage       Reference of the filled grid texture.
-     * @param solidImage        Reference of the solid grid texture.
-     * @param pathGreenImage    Reference of the green path texture.
-     * @param pathRedImage      Reference of the red path texture.
-     */
-    public GridMap(PImage emptyImage, PImage filledImage, PImage solidImage, PImage pathGreenImage, PImage pathRedImage, App mainProgram) {
-        this.emptyImage = emptyImage;
-        this.filledImage = filledImage;
-        this.solidImage = solidImage;
-        this.pathGreenImage = pathGreenImage;
-        this.pathRedImage = pathRedImage;
-        this.mainProgram = mainProgram;
+     * Create a grid map with the map size of the session settings.
+     * The map only holds the game state, it is drawn by the grid map renderer.
+     */
+    public GridMap() {
         //Create an empty grid map after the map object is created.
-        createMap (GlobalSettings.mapWidth, GlobalSettings.mapHeight);
+        createMap (GlobalSettings.getSession().getMapWidth(), GlobalSettings.getSession().getMapHeight());
     }
 
     /**
@@ -58,98 +93,299 @@ public class GridMap{
      * @param height Map height.
      */
     private void createMap(int width, int height){
-        //Create an empty 2d array.
-        gridMap = new GridMapTile[height][width];
-        //For each tile in the array.
-        for(int y = 0; y < height; y++){
-            for(int x = 0; x < width; x++){
-                //Setup each tile with the given empty tile label and position.
-                gridMap[y][x] = new GridMapTile(x, y, getSprite(TileLabel.EMPTY), TileLabel.EMPTY);
+        //Create a chunked storage, every tile starts as an empty tile. Uniform chunks take no memory per tile.
+        this.width = width;
+        this.height = height;
+        gridMap = new ChunkedTileStorage(width, height, TILE_LABELS.length, (byte)TileLabel.EMPTY.ordinal());
+        //Reset the label counters, all tiles are empty.
+        Arrays.fill(tileCounts, 0);
+        tileCounts[TileLabel.EMPTY.ordinal()] = width * height;
+        //Reset the label positions, all tiles are listed under the empty label in order.
+        //Huge maps skip the position arrays, as they need memory for every tile.
+        isPositionIndexed = width * height <= POSITION_INDEX_MAX_TILES;
+        labelTilePosition = null;
+        Arrays.fill(labelTiles, null);
+        if(isPositionIndexed){
+            labelTilePosition = new int[width * height];
+            for(int i=0; i<TILE_LABELS.length; i++){
+                labelTiles[i] = new int[16];
+            }
+            labelTiles[TileLabel.EMPTY.ordinal()] = new int[width * height];
+            for(int i=0; i<width * height; i++){
+                labelTiles[TileLabel.EMPTY.ordinal()][i] = i;
+                labelTilePosition[i] = i;
             }
         }
+        //Every tile is in the empty plane.
+        labelPlanes = width * height <= BIT_PLANE_MAX_TILES ? new TileBitPlanes(width * height, TILE_LABELS.length, TileLabel.EMPTY.ordinal()) : null;
+        //Enemies are indexed by tile, so the index is created with the map.
+        enemyOccupancy = new OccupancyGrid(width, height);
+        //Path positions do not match the new size, they are created again with the first path tile.
+        pathPosition = null;
+        redPathFronts.clear();
+        //Old region labels do not match the new size, they are created again on the first capture.
+        regionLabels = null;
+        nextRegionLabel = 1;
+        captureFirstLabel = 1;
+        //The renderer no longer matches, it draws the map again from scratch.
+        isTileDirty = null;
+        dirtyTiles.clear();
+        isLayerDirty = true;
     }
     
     /**
      * Setup the map with given boolean 2d array.
+     * If the size of the map data is different from the current map, the map is created again with the new size.
      * @param mapData The boolean 2d array that represents wall and empty space.
      */
     public void loadMap(boolean[][] mapData){
-        //Exit if the size of two map is different.
-        if(mapData==null || mapData.length != gridMap.length || mapData[0].length != gridMap[0].length){
+        //Exit if the map data is invalid.
+        if(mapData==null || mapData.length == 0 || mapData[0].length == 0){
             System.out.println("Load map failed, map data is invaild. Validate the map file.");
             System.exit(1);
         }
 
+        prepareMap(mapData[0].length, mapData.length);
+
         //Set the tile solid or empty according to the 2d boolean array.
-        for(int y=0; y<gridMap.length; y++){
-            for(int x=0; x<gridMap[0].length; x++){
+        for(int y=0; y<height; y++){
+            for(int x=0; x<width; x++){
                 //If the tile in map data is true, it is a solid tile
                 if(mapData[y][x]){
-                    gridMap[y][x].setTileLabel(TileLabel.SOLID);
+                    setTileLabel(y * width + x, TileLabel.SOLID);
                 //If the tile in map data is not true, it is an empty tile.
                 }else{
-                    gridMap[y][x].setTileLabel(TileLabel.EMPTY);
+                    setTileLabel(y * width + x, TileLabel.EMPTY);
                 }
             }
         }
     }
 
     /**
-     * Recrusive function that fills the area with FLOODFILL tiles if the start position is valid.
-     * The function will not stop halfway if enemy is found at the filling position.
+     * Setup the map with the run lengths of a compiled level.
+     * The runs go through the tiles row by row, alternating between solid and empty, starting with solid.
+     * @param width Map width.
+     * @param height Map height.
+     * @param runs The run lengths, adding up to width * height.
+     */
+    public void loadMap(int width, int height, int[] runs){
+        //Exit if the map data is invalid.
+        long totalTiles = 0;
+        for(int i=0; runs != null && i<runs.length; i++){
+            totalTiles += runs[i];
+        }
+        if(width <= 0 || height <= 0 || runs == null || totalTiles != (long)width * height){
+            System.out.println("Load map failed, map data is invaild. Validate the map file.");
+            System.exit(1);
+        }
+        prepareMap(width, height);
+
+        //Set each run of tiles solid or empty.
+        int index = 0;
+        for(int i=0; i<runs.length; i++){
+            TileLabel tile = i % 2 == 0 ? TileLabel.SOLID : TileLabel.EMPTY;
+            for(int end = index + runs[i]; index < end; index++){
+                setTileLabel(index, tile);
+            }
+        }
+    }
+
+    /**
+     * Get the map ready for a new level before its tiles are set.
+     * @param width Map width.
+     * @param height Map height.
+     */
+    private void prepareMap(int width, int height){
+        //Levels can have different sizes, create the map again if the size changes.
+        if(width != this.width || height != this.height){
+            createMap(width, height);
+        }
+
+        //A capture of the old map has nothing left to fill.
+        cancelCapture();
+        //Every tile may change, so the renderer draws the whole map again instead of tracking each tile.
+        isLayerDirty = true;
+        //Enemies of the old map are gone, they will be added again when the level spawns them.
+        enemyOccupancy.clear();
+        enemySwarm = null;
+    }
+
+    /**
+     * Start a new capture. Regions labeled from now on are unvisited until the next capture starts.
+     * The label buffer is only cleared when the labels are about to run out.
+     */
+    private void beginCapture(){
+        if(regionLabels == null){
+            regionLabels = new int[width * height];
+        }
+        if(nextRegionLabel > Integer.MAX_VALUE - regionLabels.length){
+            Arrays.fill(regionLabels, 0);
+            nextRegionLabel = 1;
+        }
+        captureFirstLabel = nextRegionLabel;
+    }
+
+    /**
+     * Is the tile empty and not labeled in the current capture yet?
+     * @param index The tile index, y * width + x.
+     * @return Return true if the tile can be added to a region.
+     */
+    private boolean isUnlabeledEmpty(int index){
+        return gridMap.get(index) == TileLabel.EMPTY.ordinal() && regionLabels[index] < captureFirstLabel;
+    }
+
+    /**
+     * Scanline region labeling that gives every tile of the empty region at the start position a new region label.
+     * Each step labels a whole horizontal run of empty tiles, then queues one seed for every unlabeled run in the rows above and below.
+     * The work queue is reused between fills, so the fill does not grow the call stack or allocate once the queue is big enough.
+     * The labeled tiles are recorded in the current flood filled area. The tile labels on the map are not changed.
+     * The function will not stop halfway if enemy is found in the region.
+     * It stops halfway if more tiles than the limit are labeled, the caller can tell by the size of the flood filled area.
      * @param x The x position of the starting point.
      * @param y The y position of the starting point.
-     * @return Return false if enemy was found or the flood fill started from a invalid tile.
+     * @param tileLimit The most tiles to label before stopping.
+     * @return Return false if enemy was found in the region or the labeling was stopped.
      */
-    private boolean floodFill(int x, int y)
+    private boolean labelRegion(int x, int y, int tileLimit)
     {
-        //If the very start fill position is not empty, return false.
-        if(gridMap[y][x].getTileLabel() != TileLabel.EMPTY){
+        startRegion(x, y);
+        if(!labelRegionRuns(tileLimit, 0, false)){
             return false;
         }
+        //Return false if enemy found in any of the labeled tile.
+        return isRegionClear;
+    }
+
+    /**
+     * Start labeling a new region at the position. The runs are labeled by labelRegionRuns.
+     * @param x The x position of the starting point.
+     * @param y The y position of the starting point.
+     */
+    private void startRegion(int x, int y){
+        regionLabel = nextRegionLabel++;
+        isRegionClear = true;
+        //Start with the seed position in the work queue.
+        floodFillQueue.clear();
+        floodFillQueue.addLast(y * width + x);
+    }
 
-        //Set true if the enemy is not at the filling position.
-        boolean isAreaClear = !isEnemyAt(x, y);
+    /**
+     * Label the queued runs of the current region until the queue is empty, the tile limit is passed or the time is up.
+     * The work queue keeps the rest of the region, so the labeling can go on from where it stopped.
+     * @param tileLimit The most tiles to label before stopping.
+     * @param deadline The System.nanoTime value to stop at.
+     * @param isTimed If false, the deadline is ignored.
+     * @return Return true if the whole region is labeled.
+     */
+    private boolean labelRegionRuns(int tileLimit, long deadline, boolean isTimed){
+        while(!floodFillQueue.isEmpty()){
+            //The region is too big, stop here.
+            if(currentFloodFilledArea.size() > tileLimit){
+                return false;
+            }
+            //Out of time, go on in the next slice.
+            if(isTimed && System.nanoTime() - deadline >= 0){
+                return false;
+            }
+            int seed = floodFillQueue.pollLast();
 
-        //Set the current tile to flood filled.
-        gridMap[y][x].setTileLabel(TileLabel.FLOODFILLED);
-        //System.out.println("Flood Filled Tile: <" + x + ", " + y + ">");
+            //The seed might have been labeled by another run already.
+            if(!isUnlabeledEmpty(seed)){
+                continue;
+            }
 
-        //Add current tile to current filled area.
-        currentFloodFilledArea.add(new Vector2Int(x, y));
+            //Find the left and right end of the empty run.
+            int seedY = seed / width;
+            int rowStart = seedY * width;
+            int left = seed;
+            while(left - 1 >= rowStart && isUnlabeledEmpty(left - 1)){
+                left--;
+            }
+            int right = seed;
+            while(right + 1 < rowStart + width && isUnlabeledEmpty(right + 1)){
+                right++;
+            }
 
-        //Flood fill any empty area on 4 perpendicular directions, if any fill process found an enemy, the whole flood fill will return false.
-        for(int i=0; i<Direction.PERPENDICULAR.length; i++){
-            int vectorX = Direction.PERPENDICULAR[i].X;
-            int vectorY = Direction.PERPENDICULAR[i].Y;
-            if(!isOutOfMap(x+vectorX, y+vectorY) && gridMap[y+vectorY][x+vectorX].getTileLabel() == TileLabel.EMPTY){
-                if(!floodFill(x+vectorX, y+vectorY)){
-                    isAreaClear = false;
+            //Label the whole run. Set false if the enemy is at any of the labeled position.
+            for(int index = left; index <= right; index++){
+                if(isEnemyAt(index - rowStart, seedY)){
+                    isRegionClear = false;
                 }
+                regionLabels[index] = regionLabel;
+                currentFloodFilledArea.addLast(index);
             }
+
+            //Queue the unlabeled runs touching this run in the rows above and below.
+            if(seedY > 0){ queueRegionSeeds(left - width, right - width); }
+            if(seedY < height - 1){ queueRegionSeeds(left + width, right + width); }
         }
+        return true;
+    }
 
-        //Return false if enemy found in any of the filling tile or the flood fill started from a invalid tile.
-        return isAreaClear;
+    /**
+     * Queue one seed for each run of unlabeled empty tiles between left and right in the same row.
+     * @param left The tile index of the left end of the range, included.
+     * @param right The tile index of the right end of the range, included.
+     */
+    private void queueRegionSeeds(int left, int right){
+        if(labelPlanes != null){
+            int index = left;
+            while(index <= right){
+                //Skip the tiles that are not empty, a word of tiles at a time.
+                index = labelPlanes.nextTile(TileLabel.EMPTY.getBit(), index, right + 1);
+                if(index < 0){ return; }
+                //A tile labeled in this capture breaks the run.
+                if(regionLabels[index] >= captureFirstLabel){
+                    index++;
+                    continue;
+                }
+                //Only the first tile of a run needs to be queued, then skip the rest of the run.
+                floodFillQueue.addLast(index);
+                index++;
+                while(index <= right && isUnlabeledEmpty(index)){ index++; }
+            }
+            return;
+        }
+        boolean isInRun = false;
+        for(int index = left; index <= right; index++){
+            if(isUnlabeledEmpty(index)){
+                //Only the first tile of a run needs to be queued.
+                if(!isInRun){
+                    floodFillQueue.addLast(index);
+                    isInRun = true;
+                }
+            }else{
+                isInRun = false;
+            }
+        }
     }
     
     /**
      * Do a complete flood fill at the position.
-     * If fill succeed, set the filled area to FILLED and clear other FLOODFILLED tiles.
+     * If fill succeed, set the filled area to FILLED.
      * If fill failed (Enemy in fill area | Wrong starting position), leave the FLOODFILLED tiles on map.
      * @param x The position X.
      * @param y The position Y.
      * @return Return false if failed, true if succeed.
      */
     public boolean startFloodFill(int x, int y){
-        //Do a complete flood fill and if there is no enemy in the filled area. Fill is complete.
-        if(floodFill(x, y)){
-            //Set area that recorded in the list from FLOODFILLED to FILLED.
-            //Clear the list and the temporary tiles.
+        //A capture still in progress uses the same buffers, finish it first.
+        finishCapture();
+        //If the very start fill position is not empty, fail.
+        if(getTileLabel(y * width + x) != TileLabel.EMPTY){
+            return false;
+        }
+        beginCapture();
+        //Label the region and if there is no enemy in the region. Fill is complete.
+        if(labelRegion(x, y, Integer.MAX_VALUE)){
+            //Set area that recorded in the list to FILLED.
             setFloodFillTiles();
             return true;
         }
-        //If there is enemy in the filled area or position already filled.
+        //If there is enemy in the region, mark it as FLOODFILLED so it will not be filled again.
+        for(int i=0; i<currentFloodFilledArea.size(); i++){
+            setTileLabel(currentFloodFilledArea.get(i), TileLabel.FLOODFILLED);
+        }
         //Clean the recorded flood filled area list for the next fill.
         currentFloodFilledArea.clear();
         return false;
@@ -161,87 +397,276 @@ public class GridMap{
      */
     public void setFloodFillTiles(){
         //Set the tile labels in the area.
-        for(Vector2Int floodFillTile: currentFloodFilledArea){
-            gridMap[floodFillTile.y][floodFillTile.x].setTileLabel(TileLabel.FILLED);
+        for(int i=0; i<currentFloodFilledArea.size(); i++){
+            int floodFillTile = currentFloodFilledArea.get(i);
+            setTileLabel(floodFillTile, TileLabel.FILLED);
         }
-        //Clean the list and other temporary tiles for next flood fill.
+        //Clean the list for next flood fill.
         currentFloodFilledArea.clear();
     }
 
     /**
      * Start flood fill around the path made by player.
+     * Every empty region touching the path is labeled once. The regions without enemy are set to FILLED straight away.
+     * The regions with enemy are left untouched, so there are no temporary tiles to remove afterwards.
+     * If the capture labels more tiles than the parallel capture threshold of the session, the rest of it is labeled in parallel.
+     * If the session has a capture budget, only the path is filled now and the regions are labeled and filled over the next ticks.
      */
     public void startFloodFillAroundPath(){
-        ArrayList<Vector2Int> currentPathArea = getCurrentPathArea();
+        IntList currentPathArea = getCurrentPathArea();
         //If there are paths drawn by player.
         if(currentPathArea != null && currentPathArea.size() > 0){
-            //For each path tile.
-            for(Vector2Int currentPathTile: currentPathArea){
-                //Get any surrounding empty tiles if available.
-                ArrayList<Vector2Int> surroundTiles = new ArrayList<Vector2Int>();
-                for(int i=0; i<Direction.PERPENDICULAR.length; i++){
-                    int checkPosX = currentPathTile.x + Direction.PERPENDICULAR[i].X;
-                    int checkPosY = currentPathTile.y + Direction.PERPENDICULAR[i].Y;
-                    if(!isOutOfMap(checkPosX, checkPosY) && gridMap[checkPosY][checkPosX].getTileLabel() == TileLabel.EMPTY){
-                        surroundTiles.add(new Vector2Int(checkPosX, checkPosY));
-                    }
-                }
-                //If there are empty tiles around the current path tile.
-                if(surroundTiles!=null && surroundTiles.size() > 0){
-                    //For every empty tile surrounded around.
-                    for(Vector2Int currentTile: surroundTiles){
-                        //Do a complete flood fill. Fill with "FLOODFILLED" tiles. These tiles will not be filled again.
-                        //If there is no enemy in this flood fill. Set the tiles of this flood fill as "FILLED". 
-                        //The fill will be restarted at other position around the path.
-                        startFloodFill(currentTile.x, currentTile.y);
-                    }
-                }
+            //A capture still in progress uses the same buffers, finish it first.
+            finishCapture();
+            //Spread the capture over the next ticks if there is a time budget.
+            if(GlobalSettings.getSession().getCaptureBudgetMicros() > 0){
+                startTimedCapture();
+                return;
+            }
+            //Small captures finish on this thread, big ones are handed over to the parallel labeler.
+            if(!captureAroundPath(GlobalSettings.getSession().getParallelCaptureThreshold())){
+                captureAroundPathInParallel();
             }
             //Just fill the path if no where to fill or enemy found on both side.
             fillPathArea();
-            //Remove all temporary tiles in the map. Remove all "FLOODFILLED" tiles.
-            removeTemporaryTiles();
             //Print message.
             System.out.println("Flood Filled Area.");
         }
     }
 
+    /**
+     * Label the empty regions touching the path one by one and set the regions without enemy to FILLED.
+     * @param tileLimit The most tiles to label in this capture.
+     * @return Return false if the limit was reached before all regions were labeled.
+     */
+    private boolean captureAroundPath(int tileLimit){
+        beginCapture();
+        int labeledTiles = 0;
+        //For each path tile.
+        for(int p=0; p<currentPathArea.size(); p++){
+            int currentPathTile = currentPathArea.get(p);
+            //For every empty tile surrounded around the current path tile.
+            for(int i=0; i<Direction.PERPENDICULAR.length; i++){
+                int checkPosX = currentPathTile % width + Direction.PERPENDICULAR[i].X;
+                int checkPosY = currentPathTile / width + Direction.PERPENDICULAR[i].Y;
+                //Skip the tile if it is already part of a region labeled in this capture.
+                if(!isOutOfMap(checkPosX, checkPosY) && isUnlabeledEmpty(checkPosY * width + checkPosX)){
+                    //If there is no enemy in this region. Set the tiles of this region as "FILLED".
+                    boolean isAreaClear = labelRegion(checkPosX, checkPosY, tileLimit - labeledTiles);
+                    labeledTiles += currentFloodFilledArea.size();
+                    if(labeledTiles > tileLimit){
+                        //The capture is too big, the regions filled so far stay filled.
+                        currentFloodFilledArea.clear();
+                        return false;
+                    }
+                    if(isAreaClear){
+                        setFloodFillTiles();
+                    }else{
+                        currentFloodFilledArea.clear();
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start a capture that is done a slice at a time in tick.
+     * The tiles next to the path are kept as seeds, then the path is filled straight away so the player can draw a new one.
+     * The filled path still closes the regions, as it is not empty.
+     */
+    private void startTimedCapture(){
+        beginCapture();
+        captureSeeds.clear();
+        captureSeedSet.clear();
+        for(int p=0; p<currentPathArea.size(); p++){
+            int currentPathTile = currentPathArea.get(p);
+            for(int i=0; i<Direction.PERPENDICULAR.length; i++){
+                int checkPosX = currentPathTile % width + Direction.PERPENDICULAR[i].X;
+                int checkPosY = currentPathTile / width + Direction.PERPENDICULAR[i].Y;
+                if(!isOutOfMap(checkPosX, checkPosY) && captureSeedSet.add(checkPosY * width + checkPosX)){
+                    captureSeeds.addLast(checkPosY * width + checkPosX);
+                }
+            }
+        }
+        isCapturing = true;
+        isRegionLabeling = false;
+        commitPosition = -1;
+        fillPathArea();
+    }
+
+    /**
+     * Go on with the capture in progress until it is done or the time is up.
+     * Each region is labeled, then checked for enemies, then filled. Any of these steps can be split between slices.
+     * The map stays valid between slices, the tiles of a region only turn FILLED once the whole region is known to be clear.
+     * @param deadline The System.nanoTime value to stop at.
+     * @param isTimed If false, the deadline is ignored and the capture is finished.
+     */
+    private void continueCapture(long deadline, boolean isTimed){
+        while(isCapturing){
+            //Fill the tiles of a clear region.
+            if(commitPosition >= 0){
+                if(!commitRegionTiles(deadline, isTimed)){ return; }
+                commitPosition = -1;
+                currentFloodFilledArea.clear();
+                continue;
+            }
+            //Label the rest of the current region.
+            if(isRegionLabeling){
+                if(!labelRegionRuns(Integer.MAX_VALUE, deadline, isTimed)){ return; }
+                isRegionLabeling = false;
+                //Enemies may have walked into the region while it was labeled, so check again before filling.
+                if(isRegionClear && !isEnemyInRegion()){
+                    commitPosition = 0;
+                }else{
+                    currentFloodFilledArea.clear();
+                }
+                continue;
+            }
+            //Every seed is done, the capture is complete.
+            if(captureSeeds.isEmpty()){
+                isCapturing = false;
+                System.out.println("Flood Filled Area.");
+                return;
+            }
+            //Start a new region at the next seed, unless it is already labeled or no longer empty.
+            int seed = captureSeeds.pollFirst();
+            if(isUnlabeledEmpty(seed)){
+                startRegion(seed % width, seed / width);
+                isRegionLabeling = true;
+            }
+        }
+    }
+
+    /**
+     * Set the labeled tiles of the current region to FILLED, from the commit position on.
+     * Tiles that changed or got an enemy on them since they were labeled are left as they are.
+     * @param deadline The System.nanoTime value to stop at.
+     * @param isTimed If false, the deadline is ignored.
+     * @return Return true if all tiles of the region are done.
+     */
+    private boolean commitRegionTiles(long deadline, boolean isTimed){
+        while(commitPosition < currentFloodFilledArea.size()){
+            int index = currentFloodFilledArea.get(commitPosition++);
+            if(getTileLabel(index) == TileLabel.EMPTY && !isEnemyAt(index % width, index / width)){
+                setTileLabel(index, TileLabel.FILLED);
+            }
+            //Only look at the clock every few tiles.
+            if(isTimed && (commitPosition & 255) == 0 && System.nanoTime() - deadline >= 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Is any enemy standing on an empty tile of the current region?
+     * @return Return true if an enemy is in the region.
+     */
+    private boolean isEnemyInRegion(){
+        //The occupancy index only counts the enemies, so their positions are read from the arrays of the swarm.
+        if(enemySwarm != null){
+            for(int i=0; i<enemySwarm.size(); i++){
+                int x = enemySwarm.getGridPosX(i);
+                int y = enemySwarm.getGridPosY(i);
+                if(isOutOfMap(x, y)){ continue; }
+                int index = y * width + x;
+                if(regionLabels[index] == regionLabel && getTileLabel(index) == TileLabel.EMPTY){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finish the capture in progress straight away, if there is one.
+     */
+    public void finishCapture(){
+        continueCapture(0, false);
+    }
+
+    /**
+     * Stop the capture in progress without filling the rest of it.
+     */
+    private void cancelCapture(){
+        isCapturing = false;
+        isRegionLabeling = false;
+        commitPosition = -1;
+        captureSeeds.clear();
+        currentFloodFilledArea.clear();
+    }
+
+    /**
+     * Is a capture being spread over the ticks right now?
+     * The fill progress is not final until the capture is done.
+     * @return Return true if a capture is in progress.
+     */
+    public boolean isCapturing(){
+        return isCapturing;
+    }
+
+    /**
+     * Label all empty regions touching the path in parallel and set the regions without enemy to FILLED.
+     * The map is only read while labeling, the found tiles are set on this thread afterwards.
+     */
+    private void captureAroundPathInParallel(){
+        if(parallelLabeler == null){
+            parallelLabeler = new ParallelRegionLabeler();
+        }
+        foundTiles.clear();
+        parallelLabeler.captureAroundPath(gridMap, labelPlanes, enemyOccupancy, width, height, currentPathArea, foundTiles);
+        //The found tiles are stored as runs of left and right tile index.
+        for(int i=0; i<foundTiles.size(); i+=2){
+            for(int index = foundTiles.get(i); index <= foundTiles.get(i + 1); index++){
+                setTileLabel(index, TileLabel.FILLED);
+            }
+        }
+        foundTiles.clear();
+    }
+
     /**
      * Fill the path (trail) that the player creates on the map with "FILLED" tiles.
      */
     public void fillPathArea(){
         //Fill each of the path tile.
-        for(Vector2Int currentPathTile: currentPathArea){
-            setTile(currentPathTile.x, currentPathTile.y, TileLabel.FILLED);
+        for(int i=0; i<currentPathArea.size(); i++){
+            setTileLabel(currentPathArea.get(i), TileLabel.FILLED);
         }
         //Remove all path record.
-        currentPathArea.clear();
+        clearCurrentPathArea();
     }
 
     /**
      * Remove all temporary tiles in the map.
      */
     public void removeTemporaryTiles(){
-        removeTiles(
-            new TileLabel[]{
-                TileLabel.FLOODFILLED,
-                TileLabel.PATH_G,
-                TileLabel.PATH_R
-        });
+        removeTiles(TEMPORARY_TILES);
     }
 
     /**
      * Remove a tile label in map and replace them with empty.
+     * The tiles are taken from the label index, so only the tiles that have the labels are visited.
+     * On huge maps without the label index, only the chunks that have the labels are searched.
      */
     public void removeTiles(TileLabel[] tiles){
-        //Go through each of the tile in the map.
-        for(int y=0; y<gridMap.length; y++){
-            for(int x=0; x<gridMap[0].length; x++){
-                //For each tile in the array.
-                //If current tile checking is the tile to be removed, set tile to empty.
-                for(int i=0; i<tiles.length; i++){
-                    if(gridMap[y][x].getTileLabel() == tiles[i]){
-                        gridMap[y][x].setTileLabel(TileLabel.EMPTY);
+        //For each tile label in the array.
+        for(int i=0; i<tiles.length; i++){
+            //Empty tiles are already empty.
+            if(tiles[i] == TileLabel.EMPTY){ continue; }
+            int label = tiles[i].ordinal();
+            if(isPositionIndexed){
+                //Set the last tile of the label to empty until there is none left.
+                while(tileCounts[label] > 0){
+                    setTileLabel(labelTiles[label][tileCounts[label] - 1], TileLabel.EMPTY);
+                }
+            }else{
+                //Only search the chunks that have the label.
+                for(int chunk = 0; chunk < gridMap.getChunkCount() && tileCounts[label] > 0; chunk++){
+                    foundTiles.clear();
+                    gridMap.collectTiles(chunk, label, foundTiles);
+                    for(int t=0; t<foundTiles.size(); t++){
+                        setTileLabel(foundTiles.get(t), TileLabel.EMPTY);
                     }
                 }
             }
@@ -249,149 +674,245 @@ public class GridMap{
     }
     
     /**
-     * Is tile labels at these direction?
-     * Return a list of direction found around the check position that has the specified tile label. 
-     * @param x Position X of the tile.
-     * @param y Position Y of the tile.
-     * @param checkList The directions to check.
-     * @param tileLabel The tile label to match.
-     * @return Return a list of direction from the tiles around the check position that has the specified tile label.
-     */
-    public ArrayList<Direction> getSurroundTilesDirection(int gridPositionX, int gridPositionY, Direction[] checkList, TileLabel[] tileLabel){
-        
-        ArrayList<Direction> result = new ArrayList<Direction>();
-
-        for(int i=0; i<checkList.length; i++){
-            int checkPosX = gridPositionX + checkList[i].X;
-            int checkPosY = gridPositionY + checkList[i].Y;
-            for(int t=0; t<tileLabel.length; t++){
-                if(!isOutOfMap(checkPosX, checkPosY) && gridMap[checkPosY][checkPosX].getTileLabel() == tileLabel[t]){
-                    result.add(checkList[i]);
-                    break;
-                }
+     * Get which of the eight tiles around a tile have a label in the set, without allocating.
+     * Bit n of the result is set if the tile in the direction with ordinal n is in the map and has one of the labels.
+     * @param gridPositionX The position X of the centre tile.
+     * @param gridPositionY The position Y of the centre tile.
+     * @param labelMask The set of labels, with the bit of each label set. See TileLabel.toMask.
+     * @return The passability mask of the neighbours.
+     */
+    public int getPassableMask(int gridPositionX, int gridPositionY, int labelMask){
+        int mask = 0;
+        for(int i=0; i<Direction.ALL.length; i++){
+            int checkPosX = gridPositionX + Direction.ALL[i].X;
+            int checkPosY = gridPositionY + Direction.ALL[i].Y;
+            if(!isOutOfMap(checkPosX, checkPosY) && (labelMask & (1 << gridMap.get(checkPosY * width + checkPosX))) != 0){
+                mask |= 1 << Direction.ALL[i].ordinal();
             }
         }
-
-        return result;
+        return mask;
     }
 
     /**
-     * Spread any red path in the map if found. Spread on two sides on the red path.
+     * Spread the red path fronts by one tile on both sides, if the tile next to it is a green path.
+     * Only the red parts of the path are visited, so nothing is done if the path is all green.
+     * A front that can not spread any more is dropped.
      */
     public void spreadRedPath(){
-        for (int i=0; i<currentPathArea.size(); i++) {
-
-            Vector2Int current = currentPathArea.get(i);
-
-            //If this is not the last one
-            if(i < currentPathArea.size()-1){
-                Vector2Int next = currentPathArea.get(i+1);
-                //If this tile is red and the next is green, set the green to red.
-                if(getTile(current.x, current.y)==TileLabel.PATH_R && getTile(next.x, next.y)==TileLabel.PATH_G){
-                    setTile(next.x, next.y, TileLabel.PATH_R);
-                    //Skip one to stop the spread.
-                    i+=1;
-                }
+        int frontCount = redPathFronts.size() / 2;
+        for(int i=0; i<frontCount; i++){
+            int first = redPathFronts.pollFirst();
+            int last = redPathFronts.pollFirst();
+            boolean hasSpread = false;
+
+            //Spread to the previous tile of the path.
+            if(first > 0 && getPathTileLabel(first - 1) == TileLabel.PATH_G){
+                first--;
+                setTileLabel(getPathTileIndex(first), TileLabel.PATH_R);
+                hasSpread = true;
+            }
+            //Spread to the next tile of the path.
+            if(last < currentPathArea.size() - 1 && getPathTileLabel(last + 1) == TileLabel.PATH_G){
+                last++;
+                setTileLabel(getPathTileIndex(last), TileLabel.PATH_R);
+                hasSpread = true;
             }
 
-            //If this is not the first one
-            if(i > 0){
-                Vector2Int previous = currentPathArea.get(i-1);
-                //If this tile is red and the previous one is green, set the green to red.
-                if(getTile(current.x, current.y)==TileLabel.PATH_R && getTile(previous.x, previous.y)==TileLabel.PATH_G){
-                    setTile(previous.x, previous.y, TileLabel.PATH_R);
-                }
+            //Keep the front for the next spread if it is still moving.
+            if(hasSpread){
+                redPathFronts.addLast(first);
+                redPathFronts.addLast(last);
             }
         }
     }
 
+    /**
+     * Start a red path front at the tile if the tile is part of the current path.
+     * @param index The tile index, y * width + x.
+     */
+    private void startRedPathFront(int index){
+        if(pathPosition == null){ return; }
+        int position = pathPosition[index];
+        if(position < currentPathArea.size() && getPathTileIndex(position) == index){
+            redPathFronts.addLast(position);
+            redPathFronts.addLast(position);
+        }
+    }
+
+    /**
+     * Get the tile index of an entry in the current path list.
+     * @param position The position in the path list.
+     * @return The tile index, y * width + x.
+     */
+    private int getPathTileIndex(int position){
+        return currentPathArea.get(position);
+    }
+
+    /**
+     * Get the tile label of an entry in the current path list.
+     * @param position The position in the path list.
+     * @return The tile label on the map.
+     */
+    private TileLabel getPathTileLabel(int position){
+        return getTileLabel(getPathTileIndex(position));
+    }
+
     /**
      * Get the progress of the filled tiles in the map.
      * @return The progress of the filled tiles in the map. Ranged from 0 to 1.
      */
     public float getFilledProgress(){
-        int filledTiles = 0;
-        int otherTiles = 0;
-        //Go through each of the tile in the map.
-        for(int y=0; y<gridMap.length; y++){
-            for(int x=0; x<gridMap[0].length; x++){
-                //Get the filled tiles count
-                if(gridMap[y][x].getTileLabel() == TileLabel.FILLED){
-                    filledTiles++;
-                }
-                //Get all other tiles count except the wall.
-                else if(gridMap[y][x].getTileLabel() != TileLabel.SOLID){
-                    otherTiles++;
-                }
-            }
-        }
-        return (float)filledTiles / (float)(filledTiles + otherTiles);
+        int fillableTiles = getFillableTileCount();
+        if(fillableTiles == 0){ return 0; }
+        return (float)tileCounts[TileLabel.FILLED.ordinal()] / (float)fillableTiles;
+    }
+
+    /**
+     * Check if the filled tiles have reached the goal. The check is done with tile counts, so it is exact.
+     * @param goal The goal of the level. Ranged from 0 to 1.
+     * @return Return true if the number of filled tiles has reached the goal.
+     */
+    public boolean isGoalReached(float goal){
+        int fillableTiles = getFillableTileCount();
+        if(fillableTiles == 0){ return false; }
+        int goalTiles = (int)Math.ceil((double)goal * fillableTiles);
+        return tileCounts[TileLabel.FILLED.ordinal()] >= goalTiles;
+    }
+
+    /**
+     * Get the number of tiles with the tile label in the map.
+     * The count is kept up to date on every tile change, so this does not scan the map.
+     * @param tile The tile label to count.
+     * @return The number of tiles with the label.
+     */
+    public int getTileCount(TileLabel tile){
+        return tileCounts[tile.ordinal()];
+    }
+
+    /**
+     * Check if the tile has one of the labels, with one read of the stored label.
+     * @param x Position X.
+     * @param y Position Y.
+     * @param labelMask The tile labels, with the bit of each label set.
+     * @return Return true if the tile has one of the labels.
+     */
+    public boolean isTileIn(int x, int y, int labelMask){
+        return (labelMask & (1 << gridMap.get(y * width + x))) != 0;
+    }
+
+    /**
+     * Get the number of tiles that can be filled, which are all tiles except the wall.
+     * @return The number of tiles that are not solid.
+     */
+    public int getFillableTileCount(){
+        return width * height - tileCounts[TileLabel.SOLID.ordinal()];
+    }
+
+    /**
+     * Get the random number source of the map. Enemies and power ups on the map use it, so a seeded game plays out the same every time.
+     * @return The random number source.
+     */
+    public Random getRandom(){
+        return random;
+    }
+
+    /**
+     * Set the random number source of the map.
+     * @param random The random number source.
+     */
+    public void setRandom(Random random){
+        this.random = random;
     }
 
     /**
      * Get a random position in the tile types on the map.
+     * @param spawnArea The tile types to pick from.
+     * @return The random position, 0,0 if there is no such tile.
      */
     public Vector2Int getRandomPosition(TileLabel[] spawnArea){
-        ArrayList<Vector2Int> allPositions = getTiles(spawnArea);
-        if(allPositions.size()<=0){
+        return getRandomPosition(TileLabel.toMask(spawnArea));
+    }
+
+    /**
+     * Get a random position in a set of tile types on the map. The labels are counted in the order of the tile label enum.
+     * @param labelMask The tile types to pick from, with the bit of each label set.
+     * @return The random position, 0,0 if there is no such tile.
+     */
+    public Vector2Int getRandomPosition(int labelMask){
+        //Count the tiles of all the labels.
+        int totalTiles = 0;
+        for(int label=0; label<TILE_LABELS.length; label++){
+            if((labelMask & (1 << label)) != 0){ totalTiles += tileCounts[label]; }
+        }
+        if(totalTiles<=0){
             System.out.println("No available position for to spawn.");
             return new Vector2Int(0, 0);
         }
-        int randomIndex = (int)(Math.random() * (double)(allPositions.size()));
-        return allPositions.get(randomIndex);
+        //Pick a random tile, then find which label it belongs to.
+        int randomIndex = random.nextInt(totalTiles);
+        if(!isPositionIndexed){
+            //Find the chunk the random tile is in, then search the chunk.
+            for(int chunk = 0; chunk < gridMap.getChunkCount(); chunk++){
+                for(int label=0; label<TILE_LABELS.length; label++){
+                    if((labelMask & (1 << label)) == 0){ continue; }
+                    int labelCount = gridMap.getChunkLabelCount(chunk, label);
+                    if(randomIndex < labelCount){
+                        int index = gridMap.findTile(chunk, label, randomIndex);
+                        return new Vector2Int(index % width, index / width);
+                    }
+                    randomIndex -= labelCount;
+                }
+            }
+            return new Vector2Int(0, 0);
+        }
+        for(int label=0; label<TILE_LABELS.length; label++){
+            if((labelMask & (1 << label)) == 0){ continue; }
+            int labelCount = tileCounts[label];
+            if(randomIndex < labelCount){
+                int index = labelTiles[label][randomIndex];
+                return new Vector2Int(index % width, index / width);
+            }
+            randomIndex -= labelCount;
+        }
+        return new Vector2Int(0, 0);
     }
 
     /**
-     * Draw the whole map by setting and drawing each tile.
-     * @param app The main program.
+     * Update the map by one simulation tick. Spread the red path and go on with the capture in progress.
      */
     public void tick(){
+        //Spend the time budget of this tick on the capture in progress.
+        if(isCapturing){
+            continueCapture(System.nanoTime() + GlobalSettings.getSession().getCaptureBudgetMicros() * 1000L, true);
+        }
         pathSpreadTimer++;
-        if(pathSpreadTimer >= framesPerTile){
+        if(pathSpreadTimer >= ticksPerTile){
             spreadRedPath();
             pathSpreadTimer = 0;
         }
     }
 
     /**
-     * Draw the whole map by setting and drawing each tile.
-     * @param app The main program.
+     * Take the tiles that changed since the last call, so a renderer only has to draw those again.
+     * The changes are only recorded after the first call, so a map that is never drawn does not keep them.
+     * @param changedTiles The list to add the changed tiles to, packed as y * width + x.
+     * @return Return true if every tile should be drawn again, the list is left untouched in that case.
      */
-    public void draw(PApplet app){
-        //For each tile in the map.
-        for(int y = 0; y < gridMap.length; y++){
-            for(int x = 0; x < gridMap[0].length; x++){
-                //Get the tile label of the current tile.
-                TileLabel currentTileLabel = gridMap[y][x].getTileLabel();
-                //Get the tile image using the tile label.
-                PImage currentTileImage = getSprite(currentTileLabel);
-                gridMap[y][x].setSprite(currentTileImage);
-                //Draw this tile.
-                gridMap[y][x].draw(app);
-            }
+    public boolean takeChangedTiles(IntDeque changedTiles){
+        //Start recording the changes the first time a renderer asks.
+        if(isTileDirty == null){
+            isTileDirty = new boolean[width * height];
+            isLayerDirty = true;
         }
-    }
-
-    /**
-     * Get the sprite reference according to the tile label.
-     * @param tileLabel The tile label to get sprite reference.
-     * @return Sprite reference of the tile label.
-     */
-    public PImage getSprite(TileLabel tileLabel){
-        switch(tileLabel){
-            case EMPTY:
-                return emptyImage;
-            case FILLED:
-                return filledImage;
-            case SOLID:
-                return solidImage;
-            case PATH_G:
-                return pathGreenImage;
-            case PATH_R:
-                return pathRedImage;
-            default:
-                return solidImage;
+        boolean isAllChanged = isLayerDirty;
+        for(int i = 0; i < dirtyTiles.size(); i++){
+            int index = dirtyTiles.get(i);
+            isTileDirty[index] = false;
+            if(!isAllChanged){ changedTiles.addLast(index); }
         }
+        dirtyTiles.clear();
+        isLayerDirty = false;
+        return isAllChanged;
     }
 
     /**
@@ -401,7 +922,11 @@ public class GridMap{
      * @param tile The tile object.
      */
     public void setTile(int x, int y, TileLabel tile){
-        gridMap[y][x].setTileLabel(tile);
+        int index = y * width + x;
+        //A path tile that turns red starts spreading along the path.
+        boolean isNewRedPath = tile == TileLabel.PATH_R && getTileLabel(index) != TileLabel.PATH_R;
+        setTileLabel(index, tile);
+        if(isNewRedPath){ startRedPathFront(index); }
     }
 
     /**
@@ -411,29 +936,118 @@ public class GridMap{
      * @return The tile object.
      */
     public TileLabel getTile(int x, int y){
-        return gridMap[y][x].getTileLabel();
+        return getTileLabel(y * width + x);
     }
 
     /**
-     * Get all tiles position of the tile type found.
-     * @param tiles The tile label that we want to search positions
-     * @return A list of positions that represents all tiles with the labels in map.
+     * Get a tile label at a packed tile index, like the ones in the current path list.
+     * @param index The tile index, y * width + x.
+     * @return The tile object.
      */
-    public ArrayList<Vector2Int> getTiles(TileLabel[] tiles){
-        ArrayList<Vector2Int> allPositions = new ArrayList<Vector2Int>();
-        //Go through each of the tile in the map.
-        for(int y=0; y<gridMap.length; y++){
-            for(int x=0; x<gridMap[0].length; x++){
-                //For each tile in the array.
-                //If current tile checking is the tile, record it.
-                for(int i=0; i<tiles.length; i++){
-                    if(gridMap[y][x].getTileLabel() == tiles[i]){
-                        allPositions.add(new Vector2Int(x, y));
-                    }
+    public TileLabel getTile(int index){
+        return getTileLabel(index);
+    }
+
+    /**
+     * Get the tile label stored at a packed tile index.
+     * @param index The tile index, y * width + x.
+     * @return The tile label.
+     */
+    private TileLabel getTileLabel(int index){
+        return TILE_LABELS[gridMap.get(index)];
+    }
+
+    /**
+     * Store a tile label at a packed tile index.
+     * @param index The tile index, y * width + x.
+     * @param tile The tile label.
+     */
+    private void setTileLabel(int index, TileLabel tile){
+        //Nothing to do if the label does not change.
+        int oldLabel = gridMap.get(index);
+        if(oldLabel == tile.ordinal()){ return; }
+        //Mark the tile to be drawn again, unless the whole map is going to be drawn.
+        if(!isLayerDirty && !isTileDirty[index]){
+            isTileDirty[index] = true;
+            dirtyTiles.addLast(index);
+        }
+        //Keep the label counters in sync with the stored label.
+        if(isPositionIndexed){
+            removeLabelTile(oldLabel, index);
+            addLabelTile(tile.ordinal(), index);
+        }else{
+            tileCounts[oldLabel]--;
+            tileCounts[tile.ordinal()]++;
+        }
+        if(labelPlanes != null){ labelPlanes.move(index, oldLabel, tile.ordinal()); }
+        gridMap.set(index, (byte)tile.ordinal());
+    }
+
+    /**
+     * Add a tile to the end of the position array of a label.
+     * @param label The tile label ordinal.
+     * @param index The tile index, y * width + x.
+     */
+    private void addLabelTile(int label, int index){
+        int count = tileCounts[label];
+        if(count == labelTiles[label].length){
+            labelTiles[label] = Arrays.copyOf(labelTiles[label], Math.min(count * 2, width * height));
+        }
+        labelTiles[label][count] = index;
+        labelTilePosition[index] = count;
+        tileCounts[label]++;
+    }
+
+    /**
+     * Remove a tile from the position array of a label by moving the last tile into its place.
+     * @param label The tile label ordinal.
+     * @param index The tile index, y * width + x.
+     */
+    private void removeLabelTile(int label, int index){
+        int position = labelTilePosition[index];
+        int lastIndex = labelTiles[label][tileCounts[label] - 1];
+        labelTiles[label][position] = lastIndex;
+        labelTilePosition[lastIndex] = position;
+        tileCounts[label]--;
+    }
+
+    /**
+     * Get the tile index of one of the tiles with the label, without allocating a list.
+     * Use with getTileCount to go through all tiles of a label. The order changes when tiles change.
+     * On huge maps without the label index, this searches the chunks instead of being a direct lookup.
+     * @param tile The tile label.
+     * @param i The position in the label index, from 0 to getTileCount(tile) - 1.
+     * @return The tile index, y * width + x.
+     */
+    public int getTileIndex(TileLabel tile, int i){
+        if(i < 0 || i >= tileCounts[tile.ordinal()]){ throw new IndexOutOfBoundsException("Index: " + i); }
+        if(!isPositionIndexed){
+            //Find the chunk the tile is in, then search the chunk.
+            for(int chunk = 0; chunk < gridMap.getChunkCount(); chunk++){
+                int labelCount = gridMap.getChunkLabelCount(chunk, tile.ordinal());
+                if(i < labelCount){
+                    return gridMap.findTile(chunk, tile.ordinal(), i);
                 }
+                i -= labelCount;
             }
         }
-        return allPositions;
+        return labelTiles[tile.ordinal()][i];
+    }
+
+    /**
+     * Get the width of the map.
+     * @return Map width in tiles.
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Get the height of the map.
+     * @return Map height in tiles.
+     */
+    public int getHeight(){
+        return height;
     }
 
     /**
@@ -441,14 +1055,30 @@ public class GridMap{
      * @pathTile The path tiles to be added to the list.
      */
     public void addCurrentPathArea(Vector2Int pathTile){
-        currentPathArea.add(pathTile);
+        addCurrentPathArea(pathTile.x, pathTile.y);
+    }
+
+    /**
+     * Add path tile to the list of path tiles position, without creating a position object.
+     * @param x Position X.
+     * @param y Position Y.
+     */
+    public void addCurrentPathArea(int x, int y){
+        int index = y * width + x;
+        if(pathPosition == null){
+            pathPosition = new int[width * height];
+        }
+        pathPosition[index] = currentPathArea.size();
+        currentPathArea.add(index);
+        //If the tile is already red, it starts spreading along the path.
+        if(getTileLabel(index) == TileLabel.PATH_R){ startRedPathFront(index); }
     }
 
     /**
      * Get current path list.
-     * @return A list of path tiles position.
+     * @return A list of path tiles position, packed as y * width + x.
      */
-    public ArrayList<Vector2Int> getCurrentPathArea(){
+    public IntList getCurrentPathArea(){
         return currentPathArea;
     }
 
@@ -457,6 +1087,7 @@ public class GridMap{
      */
     public void clearCurrentPathArea(){
         currentPathArea.clear();
+        redPathFronts.clear();
     }
 
     /**
@@ -466,7 +1097,32 @@ public class GridMap{
      * @return Return true is enemy is on the grid position.
      */
     public boolean isEnemyAt(int gridPositionX, int gridPositionY){
-        return mainProgram.isEnemyAt(gridPositionX, gridPositionY);
+        return enemyOccupancy.isOccupied(gridPositionX, gridPositionY);
+    }
+
+    /**
+     * Get the index of the enemies standing on each tile.
+     * Enemies created on this map add themselves to it, and it is cleared when a new map is loaded.
+     * @return The enemy occupancy index.
+     */
+    public OccupancyGrid getEnemyOccupancy(){
+        return enemyOccupancy;
+    }
+
+    /**
+     * Get the enemies stored in arrays on this map.
+     * @return The enemy swarm, null if there is none.
+     */
+    public EnemySwarm getEnemySwarm(){
+        return enemySwarm;
+    }
+
+    /**
+     * Set the enemies stored in arrays on this map. Is called by the swarm when it is created.
+     * @param enemySwarm The enemy swarm.
+     */
+    void setEnemySwarm(EnemySwarm enemySwarm){
+        this.enemySwarm = enemySwarm;
     }
 
 
@@ -476,8 +1132,8 @@ public class GridMap{
      * @param gridPositionY The position Y.
      * @return Return false if the position is in the map, true if the position is out of the map.
      */
-    public static boolean isOutOfMap(int gridPositionX, int gridPositionY){
-        return gridPositionX < 0 || gridPositionY < 0 || gridPositionX >= GlobalSettings.mapWidth || gridPositionY >= GlobalSettings.mapHeight;
+    public boolean isOutOfMap(int gridPositionX, int gridPositionY){
+        return gridPositionX < 0 || gridPositionY < 0 || gridPositionX >= width || gridPositionY >= height;
     }
 
 }
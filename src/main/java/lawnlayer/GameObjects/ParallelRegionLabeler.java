@@ -0,0 +1,355 @@
+package lawnlayer.GameObjects;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import lawnlayer.GameObjectClass.OccupancyGrid;
+import lawnlayer.GeneralClass.Direction;
+import lawnlayer.GeneralClass.IntDeque;
+import lawnlayer.GeneralClass.IntList;
+import lawnlayer.GeneralClass.TileLabel;
+
+/**
+ * This labels the empty regions of a grid map in parallel, for captures that are too big for one thread.
+ * The map is cut into horizontal stripes that are labeled on the common fork join pool.
+ * Each stripe stores its empty tiles as horizontal runs and joins the touching runs of neighbouring rows with a union find.
+ * After all stripes are done, the runs touching across the stripe borders are joined, so every region ends up with one root run.
+ * The result is the same as labeling the regions one by one, only the work is shared between the threads.
+ */
+public class ParallelRegionLabeler {
+
+    private static final int STRIPES_PER_THREAD = 4;   //More stripes than threads, so a slow stripe does not hold up the rest.
+
+    private int width;                  //The width of the map in tiles.
+    private int height;                 //The height of the map in tiles.
+    private int rowsPerStripe;          //The number of rows in each stripe, the last stripe can be shorter.
+    private ChunkedTileStorage tiles;   //The tiles of the map, only read while labeling.
+    private TileBitPlanes planes;       //The bit planes of the map, only read while labeling. Null if the map has none.
+    private OccupancyGrid enemies;      //The enemies of the map, only read while labeling.
+    private Stripe[] stripes;           //The runs of each stripe.
+    private int[] runOffsets;           //The global index of the first run of each stripe.
+    private int[] parents;              //The union find parent of each run, by global run index.
+
+    /**
+     * The empty runs of a stripe. Runs are stored row by row, from left to right.
+     */
+    private static class Stripe {
+        int firstRow;                   //The first row of the stripe.
+        int rowCount;                   //The number of rows in the stripe.
+        int runCount = 0;               //The number of runs found.
+        int[] runStarts = new int[64];  //The tile index of the left end of each run, y * width + x.
+        int[] runEnds = new int[64];    //The tile index of the right end of each run, y * width + x.
+        int[] parents = new int[64];    //The union find parent of each run, by run index in the stripe.
+        boolean[] hasEnemy = new boolean[64];   //If an enemy is standing on any tile of each run.
+        int[] rowFirstRun;              //The index of the first run of each row, with one more entry for the end.
+    }
+
+    /**
+     * The fork join task that labels a range of stripes, split in half until one stripe is left.
+     */
+    private class LabelStripesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private int first;              //The first stripe to label.
+        private int last;               //The last stripe to label, excluded.
+
+        LabelStripesTask(int first, int last){
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute(){
+            if(last - first == 1){
+                labelStripe(stripes[first]);
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            invokeAll(new LabelStripesTask(first, middle), new LabelStripesTask(middle, last));
+        }
+    }
+
+    /**
+     * Find every empty region touching the path and record the tiles of the regions without enemy.
+     * The map is only read, so the caller decides what to do with the found tiles.
+     * @param tiles The tiles of the map.
+     * @param planes The bit planes of the map, used to find the empty runs a word at a time. Null to read the tiles one by one.
+     * @param enemies The enemies of the map.
+     * @param width Map width.
+     * @param height Map height.
+     * @param path The path tiles, packed as y * width + x. Regions next to any of them are captured.
+     * @param result The deque to add the captured tiles to, as pairs of the left and right tile index of each run, y * width + x.
+     */
+    public void captureAroundPath(ChunkedTileStorage tiles, TileBitPlanes planes, OccupancyGrid enemies, int width, int height, IntList path, IntDeque result){
+        this.tiles = tiles;
+        this.planes = planes;
+        this.enemies = enemies;
+        this.width = width;
+        this.height = height;
+
+        //Label each stripe on the common pool.
+        int stripeCount = Math.min(height, ForkJoinPool.getCommonPoolParallelism() * STRIPES_PER_THREAD);
+        rowsPerStripe = (height + stripeCount - 1) / stripeCount;
+        stripeCount = (height + rowsPerStripe - 1) / rowsPerStripe;
+        stripes = new Stripe[stripeCount];
+        for(int s=0; s<stripeCount; s++){
+            stripes[s] = new Stripe();
+            stripes[s].firstRow = s * rowsPerStripe;
+            stripes[s].rowCount = Math.min(rowsPerStripe, height - stripes[s].firstRow);
+        }
+        ForkJoinPool.commonPool().invoke(new LabelStripesTask(0, stripeCount));
+
+        //Give every run a global index, keeping the roots found inside the stripes.
+        runOffsets = new int[stripeCount + 1];
+        for(int s=0; s<stripeCount; s++){
+            runOffsets[s + 1] = runOffsets[s] + stripes[s].runCount;
+        }
+        parents = new int[runOffsets[stripeCount]];
+        boolean[] hasEnemy = new boolean[parents.length];
+        for(int s=0; s<stripeCount; s++){
+            for(int r=0; r<stripes[s].runCount; r++){
+                parents[runOffsets[s] + r] = runOffsets[s] + stripes[s].parents[r];
+            }
+        }
+
+        //Join the runs touching across each stripe border.
+        for(int s=0; s+1<stripeCount; s++){
+            Stripe upper = stripes[s];
+            Stripe lower = stripes[s + 1];
+            joinRows(upper.rowFirstRun[upper.rowCount - 1], upper.rowFirstRun[upper.rowCount], runOffsets[s], upper,
+                     lower.rowFirstRun[0], lower.rowFirstRun[1], runOffsets[s + 1], lower);
+        }
+
+        //Move the enemy marks to the roots.
+        for(int s=0; s<stripeCount; s++){
+            for(int r=0; r<stripes[s].runCount; r++){
+                if(stripes[s].hasEnemy[r]){
+                    hasEnemy[find(runOffsets[s] + r)] = true;
+                }
+            }
+        }
+
+        //Mark the roots of the regions next to the path.
+        boolean[] isTouched = new boolean[parents.length];
+        for(int p=0; p<path.size(); p++){
+            int pathTile = path.get(p);
+            for(int i=0; i<Direction.PERPENDICULAR.length; i++){
+                int checkPosX = pathTile % width + Direction.PERPENDICULAR[i].X;
+                int checkPosY = pathTile / width + Direction.PERPENDICULAR[i].Y;
+                if(checkPosX < 0 || checkPosY < 0 || checkPosX >= width || checkPosY >= height){ continue; }
+                int run = findRun(checkPosX, checkPosY);
+                if(run >= 0){
+                    isTouched[find(run)] = true;
+                }
+            }
+        }
+
+        //Record the runs of the regions next to the path that have no enemy.
+        for(int s=0; s<stripeCount; s++){
+            for(int r=0; r<stripes[s].runCount; r++){
+                int root = find(runOffsets[s] + r);
+                if(isTouched[root] && !hasEnemy[root]){
+                    result.addLast(stripes[s].runStarts[r]);
+                    result.addLast(stripes[s].runEnds[r]);
+                }
+            }
+        }
+
+        //Do not hold on to the map or the runs after the capture.
+        this.tiles = null;
+        this.planes = null;
+        this.enemies = null;
+        stripes = null;
+        runOffsets = null;
+        parents = null;
+    }
+
+    /**
+     * Find the empty runs of a stripe and join the runs touching in neighbouring rows.
+     * Runs in different stripes are joined later.
+     * @param stripe The stripe to label.
+     */
+    private void labelStripe(Stripe stripe){
+        stripe.rowFirstRun = new int[stripe.rowCount + 1];
+        for(int row=0; row<stripe.rowCount; row++){
+            int y = stripe.firstRow + row;
+            stripe.rowFirstRun[row] = stripe.runCount;
+            if(planes != null){
+                labelRowRuns(stripe, y);
+            }else{
+                labelRowTiles(stripe, y);
+            }
+            //Join with the runs of the row above.
+            if(row > 0){
+                joinRows(stripe.rowFirstRun[row - 1], stripe.rowFirstRun[row], 0, stripe,
+                         stripe.rowFirstRun[row], stripe.runCount, 0, stripe);
+            }
+        }
+        stripe.rowFirstRun[stripe.rowCount] = stripe.runCount;
+    }
+
+    /**
+     * Find the empty runs of a row with the bit planes. The ends of each run are found a word of 64 tiles at a time.
+     * @param stripe The stripe of the row.
+     * @param y The row.
+     */
+    private void labelRowRuns(Stripe stripe, int y){
+        int empty = TileLabel.EMPTY.getBit();
+        int rowStart = y * width;
+        int rowEnd = rowStart + width;
+        int left = planes.nextTile(empty, rowStart, rowEnd);
+        while(left >= 0){
+            int end = planes.nextOtherTile(empty, left, rowEnd);
+            if(end < 0){ end = rowEnd; }
+            //Only the tiles of the run are checked for enemies.
+            boolean isEnemyFound = false;
+            for(int index = left; index < end && !isEnemyFound; index++){
+                if(enemies.isOccupied(index - rowStart, y)){ isEnemyFound = true; }
+            }
+            addRun(stripe, left, end - 1, isEnemyFound);
+            left = planes.nextTile(empty, end, rowEnd);
+        }
+    }
+
+    /**
+     * Find the empty runs of a row by reading the tiles one by one.
+     * @param stripe The stripe of the row.
+     * @param y The row.
+     */
+    private void labelRowTiles(Stripe stripe, int y){
+        int x = 0;
+        while(x < width){
+            if(tiles.get(y * width + x) != TileLabel.EMPTY.ordinal()){
+                x++;
+                continue;
+            }
+            //Find the right end of the empty run, checking for enemies on the way.
+            int left = x;
+            boolean isEnemyFound = false;
+            while(x < width && tiles.get(y * width + x) == TileLabel.EMPTY.ordinal()){
+                if(enemies.isOccupied(x, y)){ isEnemyFound = true; }
+                x++;
+            }
+            addRun(stripe, y * width + left, y * width + x - 1, isEnemyFound);
+        }
+    }
+
+    /**
+     * Add a run to the stripe as its own root.
+     * @param stripe The stripe.
+     * @param start The tile index of the left end of the run.
+     * @param end The tile index of the right end of the run.
+     * @param isEnemyFound If an enemy is standing on the run.
+     */
+    private void addRun(Stripe stripe, int start, int end, boolean isEnemyFound){
+        if(stripe.runCount == stripe.runStarts.length){
+            int capacity = stripe.runCount * 2;
+            stripe.runStarts = Arrays.copyOf(stripe.runStarts, capacity);
+            stripe.runEnds = Arrays.copyOf(stripe.runEnds, capacity);
+            stripe.parents = Arrays.copyOf(stripe.parents, capacity);
+            stripe.hasEnemy = Arrays.copyOf(stripe.hasEnemy, capacity);
+        }
+        stripe.runStarts[stripe.runCount] = start;
+        stripe.runEnds[stripe.runCount] = end;
+        stripe.parents[stripe.runCount] = stripe.runCount;
+        stripe.hasEnemy[stripe.runCount] = isEnemyFound;
+        stripe.runCount++;
+    }
+
+    /**
+     * Join the runs of two neighbouring rows that share at least one column.
+     * If both rows are in the same stripe, the runs are joined in the parents of the stripe, otherwise in the global parents.
+     * @param upperFirst The first run of the upper row.
+     * @param upperEnd The end of the runs of the upper row, excluded.
+     * @param upperOffset The global index of the first run of the upper stripe.
+     * @param upper The stripe of the upper row.
+     * @param lowerFirst The first run of the lower row.
+     * @param lowerEnd The end of the runs of the lower row, excluded.
+     * @param lowerOffset The global index of the first run of the lower stripe.
+     * @param lower The stripe of the lower row.
+     */
+    private void joinRows(int upperFirst, int upperEnd, int upperOffset, Stripe upper, int lowerFirst, int lowerEnd, int lowerOffset, Stripe lower){
+        int u = upperFirst;
+        int l = lowerFirst;
+        while(u < upperEnd && l < lowerEnd){
+            int upperLeft = upper.runStarts[u] % width;
+            int upperRight = upper.runEnds[u] % width;
+            int lowerLeft = lower.runStarts[l] % width;
+            int lowerRight = lower.runEnds[l] % width;
+            //The runs touch if they share a column.
+            if(upperLeft <= lowerRight && lowerLeft <= upperRight){
+                if(upper == lower){
+                    union(upper.parents, u, l);
+                }else{
+                    union(parents, upperOffset + u, lowerOffset + l);
+                }
+            }
+            //Move on from the run that ends first.
+            if(upperRight < lowerRight){ u++; }else{ l++; }
+        }
+    }
+
+    /**
+     * Find the run that covers the tile, by searching the runs of its row.
+     * @param x Position X.
+     * @param y Position Y.
+     * @return The global run index, or -1 if the tile is not empty.
+     */
+    private int findRun(int x, int y){
+        Stripe stripe = stripes[y / rowsPerStripe];
+        int row = y - stripe.firstRow;
+        int index = y * width + x;
+        int low = stripe.rowFirstRun[row];
+        int high = stripe.rowFirstRun[row + 1] - 1;
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            if(stripe.runEnds[middle] < index){
+                low = middle + 1;
+            }else if(stripe.runStarts[middle] > index){
+                high = middle - 1;
+            }else{
+                return runOffsets[y / rowsPerStripe] + middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the root of a run in the global parents.
+     * @param run The global run index.
+     * @return The global index of the root run.
+     */
+    private int find(int run){
+        return find(parents, run);
+    }
+
+    /**
+     * Find the root of an element, halving the path on the way.
+     * @param parents The parent of each element.
+     * @param element The element.
+     * @return The root of the element.
+     */
+    private static int find(int[] parents, int element){
+        while(parents[element] != element){
+            parents[element] = parents[parents[element]];
+            element = parents[element];
+        }
+        return element;
+    }
+
+    /**
+     * Join the sets of two elements. The smaller root becomes the root of both.
+     * @param parents The parent of each element.
+     * @param a The first element.
+     * @param b The second element.
+     */
+    private static void union(int[] parents, int a, int b){
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        if(rootA < rootB){
+            parents[rootB] = rootA;
+        }else if(rootB < rootA){
+            parents[rootA] = rootB;
+        }
+    }
+}
@@ -1,11 +1,10 @@
 package lawnlayer.GameObjects;
 
-import java.util.ArrayList;
 import processing.core.PImage;
 import lawnlayer.GameObjectClass.DynamicObject;
 import lawnlayer.GeneralClass.Direction;
+import lawnlayer.GeneralClass.IntList;
 import lawnlayer.GeneralClass.TileLabel;
-import lawnlayer.GeneralClass.Vector2Int;
 
 /**
  * Represents a player object on the grid map.
@@ -16,6 +15,7 @@ public class Player extends DynamicObject {
     private boolean isAlive = true;                             //Is the player alive?
     public static final float SECONDS_PER_TILE = 0.16f;         //The second to wait before moving one tile unit. (Default speed) 2PX PER FRAME = 10 FRAME PER TILE = 0.16 SEC PER TILE.
     public static final float MOVEMENT_SMOOTHNESS = 5.8f;       //The value that control the smoothness of the movement.
+    private static final int SAFE_TILES = TileLabel.SOLID.getBit() | TileLabel.FILLED.getBit();    //The tile labels where the player is safe and the path is closed.
 
     /**
      * Setup the player data.
@@ -74,12 +74,12 @@ public class Player extends DynamicObject {
      */
     public void checkFill(int x, int y){
         //When the player touch the safe area.
-        if(gridMap.getTile(x, y)==TileLabel.SOLID || gridMap.getTile(x, y)==TileLabel.FILLED){
+        if(gridMap.isTileIn(x, y, SAFE_TILES)){
             gridMap.startFloodFillAroundPath();
 
         //If player is not in safe area, put a path tile at the position
         }else{
-            gridMap.addCurrentPathArea(new Vector2Int(x, y));
+            gridMap.addCurrentPathArea(x, y);
             gridMap.setTile(x, y, TileLabel.PATH_G);
         }
     }
@@ -91,7 +91,7 @@ public class Player extends DynamicObject {
      * @return Return true if the player will die.
      */
     public boolean checkDead(int x, int y){
-        ArrayList<Vector2Int> path = gridMap.getCurrentPathArea();
+        IntList path = gridMap.getCurrentPathArea();
         TileLabel currentTileLabel = gridMap.getTile(x, y);
 
         //When the player touch the path made by itself. Kill the player.
@@ -100,8 +100,7 @@ public class Player extends DynamicObject {
             return true;
         //When the path tile player just created is red, means the path is destroyed. Kill the player.
         }else if(path.size()>0){
-            Vector2Int lastPathTile = path.get(path.size()-1);
-            TileLabel lastPathTileLabel = gridMap.getTile(lastPathTile.x, lastPathTile.y);
+            TileLabel lastPathTileLabel = gridMap.getTile(path.getLast());
             if(lastPathTileLabel==TileLabel.PATH_R){
                 kill();
                 return true;
@@ -114,6 +113,18 @@ public class Player extends DynamicObject {
         return false;
     }
 
+    /**
+     * Check if the given position is out of the grid map the player is on.
+     * @param x Position X.
+     * @param y Position Y.
+     * @return Return true if the position is out of map.
+     */
+    @Override
+    public boolean isOutOfMap(int x, int y){
+        if(gridMap == null){ return super.isOutOfMap(x, y); }
+        return gridMap.isOutOfMap(x, y);
+    }
+
     /**
      * Get the player's current grid map reference.
      * @return Current grid map.
@@ -1,7 +1,6 @@
 package lawnlayer.GameObjects;
 
-import lawnlayer.App;
-import processing.core.PImage;
+import lawnlayer.GameSimulation;
 
 /**
  * This is a power up that can make player move faster.
@@ -10,8 +9,8 @@ public class PlayerFastPowerUp extends PowerUps{
 
     public static final int EFFECT_TIME = 4800; //Effect time in milliseconds.
 
-    public PlayerFastPowerUp(int gridPosX, int gridPosY, PImage sprite, App mainProgram) {
-        super(gridPosX, gridPosY, sprite, mainProgram);
+    public PlayerFastPowerUp(int gridPosX, int gridPosY, GameSimulation simulation) {
+        super(gridPosX, gridPosY, simulation);
     }
 
     /**
@@ -19,8 +18,8 @@ public class PlayerFastPowerUp extends PowerUps{
      */
     @Override
     public void onPlayerEat() {
-        this.mainProgram.playerChangeSpeed(0.5f, EFFECT_TIME);
+        this.simulation.playerChangeSpeed(0.5f, EFFECT_TIME);
         System.out.println("Player Speed Up Power Up Eaten.");
-        this.mainProgram.removePowerUps();
+        this.simulation.removePowerUps();
     }
 }
\ No newline at end of file
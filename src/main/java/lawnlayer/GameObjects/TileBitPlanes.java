@@ -0,0 +1,103 @@
+package lawnlayer.GameObjects;
+
+import java.util.Arrays;
+
+/**
+ * This keeps one bit plane for each tile label of a grid map, next to the tile storage.
+ * The plane of a label has one bit per tile, set if the tile has that label, so every tile is set in exactly one plane.
+ * A set of labels is read by joining the planes of the labels with an or, so 64 tiles are checked at a time.
+ * Tiles are addressed with the same packed index as the grid map, y * width + x, and tile i is bit i % 64 of word i / 64.
+ */
+public class TileBitPlanes {
+
+    private int labelMask;              //The mask with the bit of every label that has a plane.
+    private long[][] planes;            //The bit plane of each label, indexed by label ordinal.
+
+    /**
+     * Create the planes of a map where every tile has the same label.
+     * @param tileCount The number of tiles of the map.
+     * @param labelTypes The number of different labels, labels are from 0 to labelTypes - 1.
+     * @param label The label of every tile.
+     */
+    public TileBitPlanes(int tileCount, int labelTypes, int label){
+        this.labelMask = (1 << labelTypes) - 1;
+        planes = new long[labelTypes][(tileCount + 63) >>> 6];
+        //Set every tile in the plane of the label, but not the bits after the last tile.
+        long[] plane = planes[label];
+        Arrays.fill(plane, -1L);
+        if((tileCount & 63) != 0){ plane[plane.length - 1] = -1L >>> (64 - (tileCount & 63)); }
+    }
+
+    /**
+     * Move a tile from the plane of its old label to the plane of its new label.
+     * @param index The tile index, y * width + x.
+     * @param oldLabel The old label of the tile.
+     * @param newLabel The new label of the tile.
+     */
+    public void move(int index, int oldLabel, int newLabel){
+        long bit = 1L << index;
+        planes[oldLabel][index >>> 6] &= ~bit;
+        planes[newLabel][index >>> 6] |= bit;
+    }
+
+    /**
+     * Find the first tile with one of the labels in a range of tiles.
+     * @param labelMask The labels, with the bit of each label set.
+     * @param from The first tile index of the range, included.
+     * @param to The last tile index of the range, excluded.
+     * @return The tile index, -1 if there is no such tile in the range.
+     */
+    public int nextTile(int labelMask, int from, int to){
+        return findTile(labelMask, from, to, false);
+    }
+
+    /**
+     * Find the first tile without any of the labels in a range of tiles.
+     * @param labelMask The labels, with the bit of each label set.
+     * @param from The first tile index of the range, included.
+     * @param to The last tile index of the range, excluded.
+     * @return The tile index, -1 if every tile in the range has one of the labels.
+     */
+    public int nextOtherTile(int labelMask, int from, int to){
+        return findTile(labelMask, from, to, true);
+    }
+
+    /**
+     * Find the first tile in a range of tiles that has, or does not have, one of the labels.
+     * Whole words without a match are skipped, so only the word with the match is looked into.
+     * @param labelMask The labels, with the bit of each label set.
+     * @param from The first tile index of the range, included.
+     * @param to The last tile index of the range, excluded.
+     * @param isInverted If true, look for a tile without any of the labels.
+     * @return The tile index, -1 if there is no such tile in the range.
+     */
+    private int findTile(int labelMask, int from, int to, boolean isInverted){
+        if(from >= to){ return -1; }
+        int w = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long word = isInverted ? ~getWord(labelMask, w) : getWord(labelMask, w);
+        word &= -1L << from;
+        while(true){
+            if(word != 0){
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                return index < to ? index : -1;
+            }
+            if(++w > lastWord){ return -1; }
+            word = isInverted ? ~getWord(labelMask, w) : getWord(labelMask, w);
+        }
+    }
+
+    /**
+     * Join one word of the planes of the labels.
+     * @param labelMask The labels, with the bit of each label set.
+     * @param w The word index.
+     * @return The word with the bit of every tile that has one of the labels.
+     */
+    private long getWord(int labelMask, int w){
+        long word = 0;
+        for(int mask = labelMask & this.labelMask; mask != 0; mask &= mask - 1){
+            word |= planes[Integer.numberOfTrailingZeros(mask)][w];
+        }
+        return word;
+    }
+}
@@ -0,0 +1,632 @@
+package lawnlayer;
+
+import java.util.Random;
+import java.util.concurrent.Future;
+import lawnlayer.Loaders.LevelLoader;
+import lawnlayer.DataClass.*;
+import lawnlayer.GameObjects.*;
+import lawnlayer.GeneralClass.*;
+
+/**
+ * The game rules and state, without any window, image or input device.
+ * It owns the grid map, the player, the enemies, the power ups, the lives and the level progress, and moves them all forward on each tick.
+ * The main program draws the simulation and passes the key presses to it. Tests and tools can create one and tick it directly.
+ *
+ * Game time moves in fixed ticks of 1 / tickRate seconds. The main program passes the real time of each frame to advance,
+ * which runs as many ticks as the time covers, so a slow frame does not slow the game down.
+ * All random numbers come from the seed, so the same seed and the same key presses on the same ticks play out the same game.
+ */
+public class GameSimulation {
+
+    private GameData gameData;                  //The levels and lives read from the config.
+    private LevelLoader levelLoader;            //Reads the level maps when they are needed.
+    private Future<PreparedLevel> nextLevel;    //The next level being prepared in the background.
+    private boolean debug;                      //When this is set to true, the maps are printed out when they are read.
+    private long seed;                          //The seed of the random numbers of every level.
+
+    private long tickCount = 0;                 //The number of ticks played since the game started.
+    private double tickAccumulator = 0;         //The game time in seconds passed to advance that has not been ticked yet.
+    private double speed = 1;                   //How fast the game time passes compared to the real time.
+
+    //Runs the delayed power up spawns and the end of the power up effects on later ticks, on the simulation thread.
+    private TimingWheel scheduler = new TimingWheel(1024);
+    private ScheduledTask powerUpSpawnTask;     //The delayed power up spawn, null if none was scheduled.
+    private ScheduledTask enemySpeedTask;       //The end of the enemy speed effect, null if none was scheduled.
+    private ScheduledTask playerSpeedTask;      //The end of the player speed effect, null if none was scheduled.
+
+    private int currentLives;
+    private int currentLevel;
+    private int currentPowerUpTimer;
+    private boolean currentPowerUpSpawn;
+    private float currentGoal;
+    private float currentProgress;
+    private GameState currentGameState;
+
+    private GridMap gridMap;
+    private Player player;
+    private EnemySwarm enemies;
+    private PowerUps powerUps;
+
+    private Vector2Int revivePostion = new Vector2Int(0, 0);
+
+    /**
+     * Create the simulation with a random seed and load the first level.
+     * @param gameData The game data read by the config reader.
+     * @param debug When this is set to true, the maps are printed out when they are read.
+     */
+    public GameSimulation(GameData gameData, boolean debug){
+        this(gameData, debug, System.nanoTime());
+    }
+
+    /**
+     * Create the simulation and load the first level.
+     * @param gameData The game data read by the config reader.
+     * @param debug When this is set to true, the maps are printed out when they are read.
+     * @param seed The seed of the random numbers, the same seed plays out the same game.
+     */
+    public GameSimulation(GameData gameData, boolean debug, long seed){
+        this.gameData = gameData;
+        this.debug = debug;
+        this.seed = seed;
+
+        //The maps are read when their levels are reached, unless they are asked to be read now.
+        levelLoader = new LevelLoader(gameData, debug);
+        if(GlobalSettings.getSession().isPreloadLevels() && !levelLoader.loadAllMaps()){
+            System.out.println("Load levels failed, validate the map files.");
+            System.exit(1);
+        }
+
+        //Create a grid map scene.
+        gridMap = new GridMap();
+
+        //Create a player. The sprite is given by the renderer.
+        player = new Player(0, 0, null, gridMap);
+
+        //Load the first level.
+        loadLevel(0);
+    }
+
+    /**
+     * Move the game forward by some real time, in fixed ticks.
+     * The time left over that is too short for a tick is kept for the next call.
+     * If the time needs more than maxCatchUpTicks ticks, the rest is dropped, so one long pause does not make the game rush afterwards.
+     * @param elapsedSeconds The real time since the last call, in seconds.
+     * @return The number of ticks run.
+     */
+    public int advance(double elapsedSeconds){
+        double tickSeconds = 1.0 / Math.max(1, GlobalSettings.getSession().getTickRate());
+        tickAccumulator += Math.max(0, elapsedSeconds) * speed;
+
+        //A faster game is allowed more ticks per call, so the catch up limit does not cap the speed.
+        int maxTicks = (int)Math.ceil(Math.max(1, GlobalSettings.getSession().getMaxCatchUpTicks()) * Math.max(1, speed));
+        int ticks = 0;
+        while(tickAccumulator >= tickSeconds && ticks < maxTicks){
+            tick();
+            tickAccumulator -= tickSeconds;
+            ticks++;
+        }
+        //Drop the time that could not be caught up, only keep the part of a tick.
+        if(tickAccumulator >= tickSeconds){
+            tickAccumulator %= tickSeconds;
+        }
+        return ticks;
+    }
+
+    /**
+     * Move the game one tick forward.
+     * Nothing is done once the game is won or lost.
+     */
+    public void tick(){
+        if(currentGameState != GameState.PLAYING){ return; }
+        tickCount++;
+
+        //Run the spawns and effect endings due on this tick.
+        scheduler.tick();
+
+        //First update all the game objects. Only the enemies due to move on this tick are visited.
+        enemies.tick();
+        if (powerUps != null) {powerUps.tick();}
+        gridMap.tick();
+        player.tick();
+
+        //Check if game state need to be changed.
+        checkPlayerDead();
+        checkFillProgress();
+        checkPowerUpSpawn();
+        powerUpsTimerCountDown();
+    }
+
+    /**
+     * Change the direction the player moves to.
+     * @param direction The direction pressed.
+     */
+    public void changePlayerDirection(Direction direction){
+        player.changeDirection(direction);
+    }
+
+    /**
+     * Load and reset the level.
+     * If the level was prepared in the background, its grid map and enemies are swapped in. Otherwise it is prepared now.
+     * @param levelIndex The level to load.
+     */
+    public void loadLevel(int levelIndex){
+        //Use the prepared level if it is the one asked for, otherwise prepare it on the current grid map.
+        PreparedLevel preparedLevel = takePreparedLevel(levelIndex);
+        if(preparedLevel == null){
+            preparedLevel = prepareLevel(levelIndex, gridMap);
+        }
+        //A level that can not be prepared stops the game here, on the thread that plays it.
+        if(preparedLevel == null){
+            System.out.println("Load level " + levelIndex + " failed, validate the level files.");
+            System.exit(1);
+        }
+        gridMap = preparedLevel.getGridMap();
+        player.setGridMap(gridMap);
+        enemies = preparedLevel.getEnemies();
+
+        LevelData levelData = preparedLevel.getLevelData();
+        currentLevel = levelIndex;
+        currentLives = gameData.getLives();
+        currentGoal = levelData.getGoal();
+        currentProgress = 0;
+        currentGameState = GameState.PLAYING;
+        currentPowerUpSpawn = false;
+
+        //The spawns and effects of the last level are cancelled, the new enemies start at normal speed.
+        cancelEffects();
+        scheduler.clear();
+
+        //Spawn and reset the player.
+        resetPlayer();
+        //Remove power ups.
+        removePowerUps();
+
+        //Prepare the next level in the background while this one is played.
+        prefetchLevel(levelIndex + 1);
+    }
+
+    /**
+     * Load the map of a level into a grid map and spawn its enemies on it.
+     * This may run on the background thread, so a broken level is only reported here and the game is stopped by loadLevel.
+     * @param levelIndex The level to prepare.
+     * @param targetMap The grid map to load the level into.
+     * @return The prepared level, or null if the map can not be read or an enemy can not be spawned.
+     */
+    public PreparedLevel prepareLevel(int levelIndex, GridMap targetMap){
+        //Each level has its own random numbers, so a level prepared in the background does not change the current one.
+        targetMap.setRandom(new Random(seed + levelIndex * 0x9E3779B97F4A7C15L));
+
+        //Get and load data from the read data object.
+        LevelData levelData = levelLoader.getLevel(levelIndex);
+        if(!levelData.isMapLoaded()){
+            System.out.println("The map of level " + levelIndex + " can not be read.");
+            return null;
+        }
+        //Compiled levels are loaded straight from their runs.
+        if(levelData.isCompiled()){
+            targetMap.loadMap(levelData.getMapWidth(), levelData.getMapHeight(), levelData.getMapRuns());
+        }else{
+            targetMap.loadMap(levelData.getLevelMap());
+        }
+
+        //Load and spawn enemies, in the order of the level.
+        EnemyData[] enemiesData = levelData.getEnemies();
+        EnemySwarm levelEnemies = new EnemySwarm(targetMap, enemiesData.length);
+        for (int i=0; i<enemiesData.length; i++) {
+            //Get required data for each enemy.
+            int type = enemiesData[i].getType();
+            int spawnX = enemiesData[i].getSpawnX();
+            int spawnY = enemiesData[i].getSpawnY();
+            boolean isRandomSpawn = enemiesData[i].isSpawnRandom();
+
+            //Spawn if the position is in map.
+            if(targetMap.isOutOfMap(spawnX, spawnY)){
+                System.out.println("The enemy" + i + "spawn location is out of map.");
+                return null;
+            }
+            if(spawnEnemy(type, isRandomSpawn, spawnX, spawnY, levelEnemies) < 0){ return null; }
+        }
+        return new PreparedLevel(levelIndex, levelData, targetMap, levelEnemies);
+    }
+
+    /**
+     * Start preparing a level on a new grid map in the background.
+     * @param levelIndex The level to prepare, nothing is done if there is no such level.
+     */
+    public void prefetchLevel(int levelIndex){
+        nextLevel = null;
+        if(levelIndex >= gameData.getLevels().length){ return; }
+        nextLevel = levelLoader.prefetch(levelIndex, () -> prepareLevel(levelIndex, new GridMap()));
+    }
+
+    /**
+     * Take the level prepared in the background, waiting for it if it is not done yet.
+     * @param levelIndex The level that is about to be loaded.
+     * @return The prepared level, or null if the prepared level is a different one, there is none, or it failed. The level is then prepared again on the calling thread.
+     */
+    private PreparedLevel takePreparedLevel(int levelIndex){
+        if(nextLevel == null){ return null; }
+        PreparedLevel preparedLevel = LevelLoader.waitFor(nextLevel);
+        nextLevel = null;
+        if(preparedLevel == null || preparedLevel.getLevelIndex() != levelIndex){ return null; }
+        return preparedLevel;
+    }
+
+    /**
+     * Spawns an enemy using the data given into the enemies of the current level.
+     * @param type The enemy type number.
+     * @param randomSpawn If the enemy spawn randomly.
+     * @param spawnX Spawn position X, will be ignored if randomSpawn is true.
+     * @param spawnY Spawn position Y, will be ignored if randomSpawn is true.
+     * @return Returns the index of the enemy, -1 if the type does not exist.
+     */
+    public int spawnEnemy(int type, boolean randomSpawn, int spawnX, int spawnY){
+        return spawnEnemy(type, randomSpawn, spawnX, spawnY, enemies);
+    }
+
+    /**
+     * Spawns an enemy using the data given into a swarm, on the grid map of the swarm.
+     * What the enemy can do comes from its type in the registry, the sprite is picked by the renderer from the type.
+     * @param type The enemy type number.
+     * @param randomSpawn If the enemy spawn randomly.
+     * @param spawnX Spawn position X, will be ignored if randomSpawn is true.
+     * @param spawnY Spawn position Y, will be ignored if randomSpawn is true.
+     * @param swarm The enemies to add the enemy to.
+     * @return Returns the index of the enemy, -1 if the type does not exist.
+     */
+    public int spawnEnemy(int type, boolean randomSpawn, int spawnX, int spawnY, EnemySwarm swarm){
+        EnemyType enemyType = gameData.getEnemyTypes().get(type);
+        if(enemyType == null){
+            System.out.println("The enemy type " + type + " does not exist.");
+            return -1;
+        }
+
+        //Get random position according to enemy's moveable area.
+        int posX = spawnX;
+        int posY = spawnY;
+        if(randomSpawn){
+            Vector2Int spawnPos = swarm.getGridMap().getRandomPosition(enemyType.getMoveableMask());
+            posX = spawnPos.x;
+            posY = spawnPos.y;
+        }
+
+        //Add the enemy.
+        return swarm.add(enemyType, posX, posY);
+    }
+
+    /**
+     * If there is no power ups and also no power ups going to spawn, start the delayed spawn.
+     */
+    public void checkPowerUpSpawn(){
+        if(powerUps==null && !currentPowerUpSpawn){
+            spawnPowerUpsDelay();
+            currentPowerUpSpawn = true;
+        }
+    }
+
+    /**
+     * Spawn a power up in random time range.
+     */
+    public void spawnPowerUpsDelay(){
+        double maxTimeSec = 10;
+        double minTimeSec = 5;
+        //If min is invalid, set default min.
+        if(minTimeSec > maxTimeSec) {minTimeSec = 0;}
+        double randomTimeSec = minTimeSec + gridMap.getRandom().nextDouble() * (maxTimeSec - minTimeSec);
+        powerUpSpawnTask = scheduler.schedule(toTicks((int)(randomTimeSec * 1000)), () -> {
+            spawnRandomPowerUps();
+            System.out.println("Power Up Spawned.");
+        });
+    }
+
+    /**
+     * Spawn a random power up.
+     */
+    public void spawnRandomPowerUps(){
+        int totalPowerUps = 2;
+        int randomIndex = gridMap.getRandom().nextInt(totalPowerUps);
+        Vector2Int spawnPos = gridMap.getRandomPosition(new TileLabel[]{TileLabel.EMPTY});
+
+        switch(randomIndex){
+            case 0:
+                powerUps = new EnemySlowPowerUp(spawnPos.x, spawnPos.y, this);
+                break;
+            case 1:
+                powerUps = new PlayerFastPowerUp(spawnPos.x, spawnPos.y, this);
+                break;
+        }
+    }
+
+    /**
+     * Turn a time into a number of ticks.
+     * @param milliseconds The time in milliseconds.
+     * @return The number of ticks, at least 1.
+     */
+    public static int toTicks(int milliseconds){
+        return Math.max(1, Math.round(milliseconds * GlobalSettings.getSession().getTickRate() / 1000f));
+    }
+
+    /**
+     * End the power up effects now. The enemies and the player go back to normal speed.
+     */
+    public void cancelEffects(){
+        if(scheduler.cancel(enemySpeedTask)){ enemiesRevertSpeed(); }
+        if(scheduler.cancel(playerSpeedTask)){ playerRevertSpeed(); }
+        currentPowerUpTimer = 0;
+    }
+
+    /**
+     * Remove power up from the map.
+     */
+    public void removePowerUps(){
+        scheduler.cancel(powerUpSpawnTask);
+        powerUps = null;
+        currentPowerUpSpawn = false;
+    }
+
+    /**
+     * Put player back to the spawn position.
+     * Enable player control.
+     * Stop all movements.
+     */
+    public void resetPlayer(){
+        player.setGridPos(revivePostion.x, revivePostion.y);
+        player.stop();
+        player.revive();
+    }
+
+    /**
+     * Check if the player is dead in the game.
+     * Revive player if live is above zero.
+     * Lose the game if live is under zero.
+     */
+    public void checkPlayerDead(){
+        //If player is in dead state.
+        if(!player.isAlive()){
+            //Lose the game if no lives left.
+            if(currentLives - 1 < 0){
+                currentGameState = GameState.LOSE;
+            }
+            //Otherwise, revive and cost one life. The power up effects end with the death.
+            else{
+                currentLives -= 1;
+                cancelEffects();
+                resetPlayer();
+            }
+        }
+    }
+
+    /**
+     * If the fill has reached the level goal, load the next level.
+     */
+    public void checkFillProgress(){
+        //Wait until the capture in progress is done.
+        if(gridMap.isCapturing()){ return; }
+        currentProgress = gridMap.getFilledProgress();
+        //If the current progress has reached the goal. Compared with exact tile counts.
+        if(gridMap.isGoalReached(currentGoal)){
+            //If there are no more levels, win the game.
+            int totalLevels = gameData.getLevels().length;
+            if(currentLevel + 1 >= totalLevels){
+                currentGameState = GameState.WIN;
+            //Otherwise, advance one level.
+            }else{
+                loadLevel(currentLevel + 1);
+            }
+        }
+    }
+
+    /**
+     * Count down the timer by one tick if it is above zero.
+     */
+    public void powerUpsTimerCountDown(){
+        if(currentPowerUpTimer>0){
+            currentPowerUpTimer -= (int)(1000 / (float)GlobalSettings.getSession().getTickRate());
+        }
+    }
+
+    /**
+     * Check if the enemy is at the specific position
+     * @param x Position X.
+     * @param y Position Y.
+     * @return If the enemy is at the specific position
+     */
+    public boolean isEnemyAt(int x, int y){
+        return gridMap.isEnemyAt(x, y);
+    }
+
+    /**
+     * Check if the player is at the specific position.
+     * @param x Position X.
+     * @param y Position Y.
+     * @return If the player is at the specific position.
+     */
+    public boolean isPlayerAt(int x, int y){
+        if(x==player.getGridPosX() && y==player.getGridPosY()){
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Change the enemy speed for a while.
+     * @param multiplyBy The value to multiply the seconds per tile by.
+     * @param milliseconds How long the change lasts.
+     */
+    public void enemiesChangeSpeed(float multiplyBy, int milliseconds){
+        enemies.setTintColor(Color.RED);
+        enemies.setSecondsPerTile(EnemySwarm.SECONDS_PER_TILE * multiplyBy);
+        System.out.println("Change Enemy Speed.");
+        currentPowerUpTimer = milliseconds;
+
+        //Revert speed after a few seconds. A new effect replaces the ending of the old one.
+        scheduler.cancel(enemySpeedTask);
+        enemySpeedTask = scheduler.schedule(toTicks(milliseconds), () -> {
+            enemiesRevertSpeed();
+            System.out.println("Revert Enemy Speed.");
+        });
+    }
+
+    /**
+     * Change enemy speed back to normal, is usually called with a delay.
+     */
+    public void enemiesRevertSpeed(){
+        enemies.setTintColor(Color.WHITE);
+        enemies.setSecondsPerTile(EnemySwarm.SECONDS_PER_TILE);
+    }
+
+    /**
+     * Change the player speed for a while.
+     * @param multiplyBy The value to multiply the seconds per tile by.
+     * @param milliseconds How long the change lasts.
+     */
+    public void playerChangeSpeed(float multiplyBy, int milliseconds){
+        player.setTintColor(Color.BLUE);
+        player.setSecondsPerTile(Player.SECONDS_PER_TILE * multiplyBy);
+        System.out.println("Change Player Speed.");
+        currentPowerUpTimer = milliseconds;
+
+        //Revert speed after a few seconds. A new effect replaces the ending of the old one.
+        scheduler.cancel(playerSpeedTask);
+        playerSpeedTask = scheduler.schedule(toTicks(milliseconds), () -> {
+            playerRevertSpeed();
+            System.out.println("Revert Player Speed.");
+        });
+    }
+
+    /**
+     * Change player speed back to normal, is usually called with a delay.
+     */
+    public void playerRevertSpeed(){
+        player.setTintColor(Color.WHITE);
+        player.setSecondsPerTile(Player.SECONDS_PER_TILE);
+    }
+
+    /**
+     * Set how fast the game time passes in advance, for example 2 for double speed or 0.5 for slow motion.
+     * @param speed The speed multiplier, 0 pauses the game.
+     */
+    public void setSpeed(double speed) {
+        this.speed = Math.max(0, speed);
+    }
+
+    /**
+     * Get how fast the game time passes in advance.
+     * @return The speed multiplier.
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Get the number of ticks played since the game started.
+     * @return The tick count.
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Get the seed of the random numbers.
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the scheduler that runs the delayed spawns and effect endings.
+     * @return The timing wheel of the simulation.
+     */
+    public TimingWheel getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Get the game data the simulation was created with.
+     * @return The game data.
+     */
+    public GameData getGameData() {
+        return gameData;
+    }
+
+    /**
+     * Get the grid map of the current level.
+     * @return The current grid map.
+     */
+    public GridMap getGridMap() {
+        return gridMap;
+    }
+
+    /**
+     * Get the player.
+     * @return The player.
+     */
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * Get the enemies of the current level.
+     * @return The current enemies.
+     */
+    public EnemySwarm getEnemies() {
+        return enemies;
+    }
+
+    /**
+     * Get the power up on the map.
+     * @return The power up, null if there is none.
+     */
+    public PowerUps getPowerUps() {
+        return powerUps;
+    }
+
+    /**
+     * Get the lives left.
+     * @return The lives left.
+     */
+    public int getLives() {
+        return currentLives;
+    }
+
+    /**
+     * Get the index of the current level.
+     * @return The current level index, starting from 0.
+     */
+    public int getLevel() {
+        return currentLevel;
+    }
+
+    /**
+     * Get the fill goal of the current level.
+     * @return The goal, between 0 and 1.
+     */
+    public float getGoal() {
+        return currentGoal;
+    }
+
+    /**
+     * Get the fill progress of the current level, updated every tick.
+     * @return The progress, between 0 and 1.
+     */
+    public float getProgress() {
+        return currentProgress;
+    }
+
+    /**
+     * Get the time left of the power up effect.
+     * @return The time left in milliseconds, 0 or less if there is no effect.
+     */
+    public int getPowerUpTimer() {
+        return currentPowerUpTimer;
+    }
+
+    /**
+     * Get the state of the game.
+     * @return The game state.
+     */
+    public GameState getGameState() {
+        return currentGameState;
+    }
+}
@@ -0,0 +1,117 @@
+package lawnlayer.GeneralClass;
+
+/**
+ * This is a growable double ended queue that stores primitive ints.
+ * The game uses it as a reusable work queue, so we do not box every grid position into an object.
+ * Once the buffer has grown to the size it needs, clearing and refilling it will not allocate any memory.
+ */
+public class IntDeque {
+
+    private int[] elements;     //The ring buffer that stores the values.
+    private int head = 0;       //The index of the first value in the ring buffer.
+    private int size = 0;       //The number of values stored.
+
+    /**
+     * Create a deque with a default capacity.
+     */
+    public IntDeque(){
+        this(16);
+    }
+
+    /**
+     * Create a deque with a given starting capacity.
+     * @param capacity The starting capacity, it will grow if more values are added.
+     */
+    public IntDeque(int capacity){
+        elements = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Add a value at the end of the deque.
+     * @param value The value to add.
+     */
+    public void addLast(int value){
+        if(size == elements.length){ grow(); }
+        elements[(head + size) % elements.length] = value;
+        size++;
+    }
+
+    /**
+     * Add a value at the front of the deque.
+     * @param value The value to add.
+     */
+    public void addFirst(int value){
+        if(size == elements.length){ grow(); }
+        head = (head - 1 + elements.length) % elements.length;
+        elements[head] = value;
+        size++;
+    }
+
+    /**
+     * Remove and return the first value. Use it as a queue.
+     * @return The first value.
+     */
+    public int pollFirst(){
+        if(size == 0){ throw new IllegalStateException("The deque is empty."); }
+        int value = elements[head];
+        head = (head + 1) % elements.length;
+        size--;
+        return value;
+    }
+
+    /**
+     * Remove and return the last value. Use it as a stack.
+     * @return The last value.
+     */
+    public int pollLast(){
+        if(size == 0){ throw new IllegalStateException("The deque is empty."); }
+        size--;
+        return elements[(head + size) % elements.length];
+    }
+
+    /**
+     * Get the value at the index counted from the front.
+     * @param index The index of the value.
+     * @return The value at the index.
+     */
+    public int get(int index){
+        if(index < 0 || index >= size){ throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size); }
+        return elements[(head + index) % elements.length];
+    }
+
+    /**
+     * Get the number of values in the deque.
+     * @return The number of values.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Is the deque empty?
+     * @return Return true if there is no value in the deque.
+     */
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     * Remove all values. The buffer is kept so it can be reused without allocation.
+     */
+    public void clear(){
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Double the capacity of the buffer and unwrap the values to the front.
+     */
+    private void grow(){
+        int[] newElements = new int[elements.length * 2];
+        for(int i=0; i<size; i++){
+            newElements[i] = elements[(head + i) % elements.length];
+        }
+        elements = newElements;
+        head = 0;
+    }
+}
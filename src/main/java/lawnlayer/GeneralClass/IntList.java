@@ -0,0 +1,99 @@
+package lawnlayer.GeneralClass;
+
+import java.util.Arrays;
+
+/**
+ * This is a growable list that stores primitive ints.
+ * The game uses it to keep tile positions packed as y * width + x, so a position is not boxed into an object.
+ * Once the buffer has grown to the size it needs, clearing and refilling it will not allocate any memory.
+ */
+public class IntList {
+
+    private int[] elements;     //The buffer that stores the values, only the first size entries are used.
+    private int size = 0;       //The number of values stored.
+
+    /**
+     * Create a list with a default capacity.
+     */
+    public IntList(){
+        this(16);
+    }
+
+    /**
+     * Create a list with a given starting capacity.
+     * @param capacity The starting capacity, it will grow if more values are added.
+     */
+    public IntList(int capacity){
+        elements = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Add a value at the end of the list.
+     * @param value The value to add.
+     */
+    public void add(int value){
+        if(size == elements.length){ elements = Arrays.copyOf(elements, elements.length * 2); }
+        elements[size++] = value;
+    }
+
+    /**
+     * Get the value at the index.
+     * @param index The index of the value.
+     * @return The value at the index.
+     */
+    public int get(int index){
+        if(index < 0 || index >= size){ throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size); }
+        return elements[index];
+    }
+
+    /**
+     * Replace the value at the index.
+     * @param index The index of the value.
+     * @param value The new value.
+     */
+    public void set(int index, int value){
+        if(index < 0 || index >= size){ throw new IndexOutOfBoundsException("Index: " + index + " Size: " + size); }
+        elements[index] = value;
+    }
+
+    /**
+     * Get the last value of the list.
+     * @return The last value.
+     */
+    public int getLast(){
+        if(size == 0){ throw new IllegalStateException("The list is empty."); }
+        return elements[size - 1];
+    }
+
+    /**
+     * Remove and return the last value.
+     * @return The last value.
+     */
+    public int removeLast(){
+        if(size == 0){ throw new IllegalStateException("The list is empty."); }
+        return elements[--size];
+    }
+
+    /**
+     * Get the number of values in the list.
+     * @return The number of values.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Is the list empty?
+     * @return Return true if there is no value in the list.
+     */
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     * Remove all values. The buffer is kept so it can be reused without allocation.
+     */
+    public void clear(){
+        size = 0;
+    }
+}
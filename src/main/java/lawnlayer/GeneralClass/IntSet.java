@@ -0,0 +1,168 @@
+package lawnlayer.GeneralClass;
+
+/**
+ * This is a hash set that stores primitive ints with open addressing.
+ * The values are kept in one array and a collision moves on to the next slot, so nothing is boxed or linked.
+ * Every slot has a stamp, a slot is used only if its stamp matches the stamp of the set,
+ * so clearing the set is done by changing the stamp, and a cleared set is reused without allocation.
+ */
+public class IntSet {
+
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;     //Spreads tile indices that are next to each other over the table.
+
+    private int[] keys;         //The values of the used slots.
+    private int[] stamps;       //The stamp of each slot, the slot is used if it matches the current stamp.
+    private int stamp = 1;      //The current stamp, 0 is never used so a removed slot can be set to it.
+    private int shift;          //The shift that turns a hash into a slot, 32 - log2 of the capacity.
+    private int size = 0;       //The number of values stored.
+
+    /**
+     * Create a set with a default capacity.
+     */
+    public IntSet(){
+        this(16);
+    }
+
+    /**
+     * Create a set with room for a number of values before it grows.
+     * @param expectedSize The number of values expected, it will grow if more values are added.
+     */
+    public IntSet(int expectedSize){
+        //Keep the table at most half full.
+        int capacity = 4;
+        while(capacity < expectedSize * 2){ capacity <<= 1; }
+        allocate(capacity);
+    }
+
+    /**
+     * Add a value to the set.
+     * @param value The value to add.
+     * @return Return true if the value was not in the set yet.
+     */
+    public boolean add(int value){
+        int mask = keys.length - 1;
+        int slot = getHomeSlot(value);
+        while(stamps[slot] == stamp){
+            if(keys[slot] == value){ return false; }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        stamps[slot] = stamp;
+        size++;
+        if(size * 2 > keys.length){ grow(); }
+        return true;
+    }
+
+    /**
+     * Check if a value is in the set.
+     * @param value The value to check.
+     * @return Return true if the value is in the set.
+     */
+    public boolean contains(int value){
+        return findSlot(value) >= 0;
+    }
+
+    /**
+     * Remove a value from the set.
+     * The values after it in the same run of used slots are moved back, so no removed marker is left in the table.
+     * @param value The value to remove.
+     * @return Return true if the value was in the set.
+     */
+    public boolean remove(int value){
+        int slot = findSlot(value);
+        if(slot < 0){ return false; }
+        int mask = keys.length - 1;
+        int next = slot;
+        while(true){
+            next = (next + 1) & mask;
+            if(stamps[next] != stamp){ break; }
+            //Move the value back if its home slot is not between the free slot and where it is now.
+            int home = getHomeSlot(keys[next]);
+            boolean canMove = slot <= next ? (home <= slot || home > next) : (home <= slot && home > next);
+            if(canMove){
+                keys[slot] = keys[next];
+                slot = next;
+            }
+        }
+        stamps[slot] = 0;
+        size--;
+        return true;
+    }
+
+    /**
+     * Get the number of values in the set.
+     * @return The number of values.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Is the set empty?
+     * @return Return true if there is no value in the set.
+     */
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     * Remove all values. The table is kept so it can be reused without allocation.
+     */
+    public void clear(){
+        size = 0;
+        stamp++;
+        //Once in a long while the stamp wraps around, then the old stamps have to be wiped.
+        if(stamp == 0){
+            for(int i=0; i<stamps.length; i++){ stamps[i] = 0; }
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Find the slot of a value.
+     * @param value The value to find.
+     * @return The slot of the value, -1 if it is not in the set.
+     */
+    private int findSlot(int value){
+        int mask = keys.length - 1;
+        int slot = getHomeSlot(value);
+        while(stamps[slot] == stamp){
+            if(keys[slot] == value){ return slot; }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Get the first slot a value is looked for in.
+     * @param value The value.
+     * @return The slot.
+     */
+    private int getHomeSlot(int value){
+        return (value * HASH_MULTIPLIER) >>> shift;
+    }
+
+    /**
+     * Create an empty table.
+     * @param capacity The number of slots, a power of two.
+     */
+    private void allocate(int capacity){
+        keys = new int[capacity];
+        stamps = new int[capacity];
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    /**
+     * Double the capacity of the table and put the values back in.
+     */
+    private void grow(){
+        int[] oldKeys = keys;
+        int[] oldStamps = stamps;
+        int oldStamp = stamp;
+        allocate(keys.length * 2);
+        size = 0;
+        for(int i=0; i<oldKeys.length; i++){
+            if(oldStamps[i] == oldStamp){ add(oldKeys[i]); }
+        }
+    }
+}
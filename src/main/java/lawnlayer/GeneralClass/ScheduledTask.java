@@ -0,0 +1,46 @@
+package lawnlayer.GeneralClass;
+
+/**
+ * This is a task that is run by a timing wheel on a later tick.
+ * A task can be scheduled again after it has run or been cancelled, so objects that act again and again can keep one task.
+ */
+public class ScheduledTask {
+
+    private Runnable action;            //The work to do when the task is due.
+    long deadline;                      //The tick the task is due on.
+    ScheduledTask previous;             //The task before this one in the same wheel slot.
+    ScheduledTask next;                 //The task after this one in the same wheel slot.
+    TimingWheel wheel;                  //The wheel the task is waiting in, null if it is not waiting.
+    boolean isDue = false;              //True if the task has been taken out of its slot and is about to run in this tick.
+
+    /**
+     * Create a task.
+     * @param action The work to do when the task is due.
+     */
+    public ScheduledTask(Runnable action){
+        this.action = action;
+    }
+
+    /**
+     * Do the work of the task.
+     */
+    void run(){
+        action.run();
+    }
+
+    /**
+     * Check if the task is waiting to run.
+     * @return Return true if the task is scheduled and has not run or been cancelled yet.
+     */
+    public boolean isScheduled(){
+        return wheel != null || isDue;
+    }
+
+    /**
+     * Get the tick the task is due on.
+     * @return The tick of the wheel the task runs on, only valid while it is scheduled.
+     */
+    public long getDeadline(){
+        return deadline;
+    }
+}
@@ -10,4 +10,23 @@ public enum TileLabel {
     PATH_G,        //PATH_G is a temporary tile that represents Green path - in progress.
     PATH_R,        //PATH_R is a temporary tile that represents Red path - hit by enemy.
     FLOODFILLED;   //FLOODFILLED is a temporary tile. To avoid duplicate fill when doing multiple times of flood filling.
+
+    /**
+     * Get the bit of the label in a label mask.
+     * @return The bit of the label.
+     */
+    public int getBit(){
+        return 1 << ordinal();
+    }
+
+    /**
+     * Turn a set of labels into a label mask, with the bit of each label set.
+     * @param labels The labels.
+     * @return The label mask.
+     */
+    public static int toMask(TileLabel[] labels){
+        int mask = 0;
+        for (TileLabel label : labels) {mask |= label.getBit();}
+        return mask;
+    }
 }
@@ -0,0 +1,165 @@
+package lawnlayer.GeneralClass;
+
+import java.util.ArrayList;
+
+/**
+ * This is a hashed timing wheel that runs tasks on later ticks of the game.
+ * The wheel is a ring of slots, a task waits in the slot of its due tick modulo the number of slots.
+ * Each tick only looks at one slot, and tasks that are due on a later turn of the wheel stay in it.
+ * Scheduling and cancelling take constant time, and everything is run on the thread that ticks the wheel.
+ */
+public class TimingWheel {
+
+    private ScheduledTask[] slotHeads;  //The first task waiting in each slot.
+    private ScheduledTask[] slotTails;  //The last task waiting in each slot, tasks are added at the end so they run in the order they were scheduled.
+    private int slotMask;               //The number of slots - 1, the number of slots is a power of two.
+    private long currentTick = 0;       //The tick the wheel is on.
+    private int size = 0;               //The number of tasks waiting.
+    private ArrayList<ScheduledTask> dueTasks = new ArrayList<ScheduledTask>();    //The reusable list of tasks to run in this tick.
+
+    /**
+     * Create a wheel.
+     * @param slots The number of slots, rounded up to a power of two. Delays longer than this take more turns of the wheel.
+     */
+    public TimingWheel(int slots){
+        int slotCount = Integer.highestOneBit(Math.max(slots - 1, 1)) << 1;
+        slotHeads = new ScheduledTask[slotCount];
+        slotTails = new ScheduledTask[slotCount];
+        slotMask = slotCount - 1;
+    }
+
+    /**
+     * Schedule some work on a later tick.
+     * @param delayTicks The number of ticks to wait, the work runs on the next tick if this is less than 1.
+     * @param action The work to do.
+     * @return The scheduled task, which can be cancelled.
+     */
+    public ScheduledTask schedule(long delayTicks, Runnable action){
+        ScheduledTask task = new ScheduledTask(action);
+        schedule(task, delayTicks);
+        return task;
+    }
+
+    /**
+     * Schedule a task on a later tick. If the task is already scheduled, it is moved to the new tick.
+     * @param task The task to schedule.
+     * @param delayTicks The number of ticks to wait, the task runs on the next tick if this is less than 1.
+     */
+    public void schedule(ScheduledTask task, long delayTicks){
+        cancel(task);
+        task.deadline = currentTick + Math.max(delayTicks, 1);
+        task.wheel = this;
+
+        //Add the task at the end of its slot.
+        int slot = (int)(task.deadline & slotMask);
+        task.previous = slotTails[slot];
+        task.next = null;
+        if(slotTails[slot] == null){
+            slotHeads[slot] = task;
+        }else{
+            slotTails[slot].next = task;
+        }
+        slotTails[slot] = task;
+        size++;
+    }
+
+    /**
+     * Cancel a task so it does not run.
+     * @param task The task to cancel, can be null.
+     * @return Return true if the task was waiting to run.
+     */
+    public boolean cancel(ScheduledTask task){
+        if(task == null){ return false; }
+        //A task taken out to run in this tick is only marked.
+        if(task.isDue){
+            task.isDue = false;
+            return true;
+        }
+        if(task.wheel != this){ return false; }
+        unlink(task);
+        return true;
+    }
+
+    /**
+     * Cancel all the tasks.
+     */
+    public void clear(){
+        for(int slot = 0; slot <= slotMask; slot++){
+            while(slotHeads[slot] != null){
+                unlink(slotHeads[slot]);
+            }
+        }
+        for(ScheduledTask task : dueTasks){
+            task.isDue = false;
+        }
+    }
+
+    /**
+     * Move the wheel one tick forward and run the tasks due on the new tick, in the order they were scheduled.
+     * Tasks can schedule or cancel other tasks while they run. Tasks scheduled now run on a later tick.
+     */
+    public void tick(){
+        currentTick++;
+        int slot = (int)(currentTick & slotMask);
+
+        //Take the due tasks out of the slot first, so the slot can change while they run.
+        dueTasks.clear();
+        ScheduledTask task = slotHeads[slot];
+        while(task != null){
+            ScheduledTask next = task.next;
+            if(task.deadline <= currentTick){
+                unlink(task);
+                task.isDue = true;
+                dueTasks.add(task);
+            }
+            task = next;
+        }
+
+        for(int i = 0; i < dueTasks.size(); i++){
+            task = dueTasks.get(i);
+            //Skip the tasks cancelled by an earlier task of this tick.
+            if(!task.isDue){ continue; }
+            task.isDue = false;
+            task.run();
+        }
+        dueTasks.clear();
+    }
+
+    /**
+     * Take a task out of its slot.
+     * @param task The task to take out.
+     */
+    private void unlink(ScheduledTask task){
+        int slot = (int)(task.deadline & slotMask);
+        if(task.previous == null){
+            slotHeads[slot] = task.next;
+        }else{
+            task.previous.next = task.next;
+        }
+        if(task.next == null){
+            slotTails[slot] = task.previous;
+        }else{
+            task.next.previous = task.previous;
+        }
+        task.previous = null;
+        task.next = null;
+        task.wheel = null;
+        size--;
+    }
+
+    /**
+     * Get the tick the wheel is on.
+     * @return The number of ticks since the wheel was created.
+     */
+    public long getCurrentTick(){
+        return currentTick;
+    }
+
+    /**
+     * Get the number of tasks waiting to run.
+     * @return The number of tasks.
+     */
+    public int size(){
+        return size;
+    }
+}
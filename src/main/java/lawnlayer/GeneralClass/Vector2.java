@@ -30,4 +30,10 @@ public class Vector2<T> {
         }
         return false;
     }
+
+    @Override
+    public int hashCode(){
+        //Equal vectors must have the same hash, so they can be used in hash sets and maps.
+        return 31 * x.hashCode() + y.hashCode();
+    }
 }
@@ -23,4 +23,10 @@ public class Vector2Int {
         //If not the same type, return false.
         return false;
     }
+
+    @Override
+    public int hashCode(){
+        //Equal vectors must have the same hash, so they can be used in hash sets and maps.
+        return 31 * x + y;
+    }
 }
@@ -1,7 +1,15 @@
 package lawnlayer;
 
+import lawnlayer.DataClass.SettingsData;
+
+/**
+ * The default settings of the game.
+ * The values used while playing are kept in the session settings, which can be changed by the config file or the command line.
+ */
 public class GlobalSettings{
     public final static int frameRate = 60;
+    public final static int tickRate = 60;                          //Simulation ticks per second of game time, the same on every machine whatever the frame rate is.
+    public final static int maxCatchUpTicks = 5;                    //The most ticks run in one frame to catch up after a slow frame, the rest of the lost time is dropped.
     public final static int canvasWidth = 1280;
     public final static int canvasHeight = 720;
 
@@ -10,5 +18,27 @@ public class GlobalSettings{
     public final static int mapTileSize = 20;
 
     public final static int topReserveHeight = 80;
+    public final static int parallelCaptureThreshold = 1 << 18;     //Captures with more tiles than this are labeled in parallel.
+    public final static int parallelEnemyThreshold = 4096;          //Ticks that move more enemies than this move them in parallel.
+    public final static int captureBudgetMicros = 0;                //Microseconds per tick to spend on a capture, 0 finishes each capture at once.
+    public final static boolean preloadLevels = false;              //True reads all level maps in parallel at startup, false reads each map when its level is reached.
     public final static String configPath = "config.json";
-}
\ No newline at end of file
+
+    private static SettingsData session = new SettingsData();    //The settings of the current game session.
+
+    /**
+     * Get the settings of the current game session.
+     * @return The session settings.
+     */
+    public static SettingsData getSession(){
+        return session;
+    }
+
+    /**
+     * Replace the settings of the current game session. Should be done before any map or object is created.
+     * @param settings The new session settings.
+     */
+    public static void setSession(SettingsData settings){
+        session = settings;
+    }
+}
@@ -0,0 +1,156 @@
+package lawnlayer;
+
+import lawnlayer.GameObjects.GridMap;
+import lawnlayer.GeneralClass.IntDeque;
+import lawnlayer.GeneralClass.TileLabel;
+import processing.core.PApplet;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+/**
+ * This draws a grid map on screen using a cached tile layer.
+ * The grid map only records which tiles changed, so the simulation does not need to know about images or the window.
+ * The layer only covers the tiles that fit in the window, so a huge map does not need a layer of its full size.
+ */
+public class GridMapRenderer {
+
+    private PImage emptyImage;          //Reference of the empty grid texture.
+    private PImage filledImage;         //Reference of the filled grid texture.
+    private PImage solidImage;          //Reference of the solid grid texture.
+    private PImage pathGreenImage;      //Reference of the green path texture.
+    private PImage pathRedImage;        //Reference of the red path texture.
+
+    private PImage[] scaledSprites = new PImage[TileLabel.values().length];  //The sprite of each tile label, resized to the tile size.
+    private int scaledSize = -1;        //The tile size the sprites were resized to, -1 before the first frame.
+
+    private PGraphics tileLayer;        //The offscreen layer that keeps the drawn tiles between frames.
+    private int layerWidth;             //The number of tile columns in the layer.
+    private int layerHeight;            //The number of tile rows in the layer.
+    private GridMap drawnMap;           //The grid map drawn into the tile layer.
+    private IntDeque changedTiles = new IntDeque(256);  //The reusable list of tiles that changed since the last frame.
+
+    /**
+     * Create a renderer with the sprite references of different tiles.
+     * @param emptyImage        Reference of the empty grid texture.
+     * @param filledImage       Reference of the filled grid texture.
+     * @param solidImage        Reference of the solid grid texture.
+     * @param pathGreenImage    Reference of the green path texture.
+     * @param pathRedImage      Reference of the red path texture.
+     */
+    public GridMapRenderer(PImage emptyImage, PImage filledImage, PImage solidImage, PImage pathGreenImage, PImage pathRedImage) {
+        this.emptyImage = emptyImage;
+        this.filledImage = filledImage;
+        this.solidImage = solidImage;
+        this.pathGreenImage = pathGreenImage;
+        this.pathRedImage = pathRedImage;
+    }
+
+    /**
+     * Draw the whole map using the cached tile layer.
+     * Only the tiles that changed since the last frame are drawn into the layer, then the layer is drawn on screen in one call.
+     * The screen position of each tile is worked out from its grid position. Tiles outside the window are not drawn.
+     * @param app The main program.
+     * @param gridMap The grid map to draw.
+     */
+    public void draw(PApplet app, GridMap gridMap){
+        int tileSize = GlobalSettings.getSession().getMapTileSize();
+        int topReserveHeight = GlobalSettings.getSession().getTopReserveHeight();
+        //Only the tiles that fit in the window are kept in the layer.
+        int width = Math.min(gridMap.getWidth(), (app.width + tileSize - 1) / tileSize);
+        int height = Math.min(gridMap.getHeight(), (app.height - topReserveHeight + tileSize - 1) / tileSize);
+        width = Math.max(width, 1);
+        height = Math.max(height, 1);
+
+        //Resize the sprites once for each tile size, so every tile is drawn as a plain copy of pixels.
+        if(scaledSize != tileSize){
+            for (TileLabel tileLabel : TileLabel.values()) {
+                scaledSprites[tileLabel.ordinal()] = scaleSprite(getSprite(tileLabel), tileSize);
+            }
+            scaledSize = tileSize;
+            drawnMap = null;
+        }
+
+        //Create the layer again if a different map or a different size is drawn.
+        boolean isNewLayer = false;
+        if(tileLayer == null || drawnMap != gridMap || layerWidth != width || layerHeight != height){
+            tileLayer = app.createGraphics(width * tileSize, height * tileSize);
+            layerWidth = width;
+            layerHeight = height;
+            drawnMap = gridMap;
+            isNewLayer = true;
+        }
+
+        changedTiles.clear();
+        boolean isAllChanged = gridMap.takeChangedTiles(changedTiles) || isNewLayer;
+
+        tileLayer.beginDraw();
+        if(isAllChanged){
+            //Draw every tile in the layer.
+            for(int y = 0; y < height; y++){
+                for(int x = 0; x < width; x++){
+                    drawTile(gridMap, x, y, tileSize);
+                }
+            }
+        }else{
+            //Only draw the tiles that changed, if they are in the layer.
+            int mapWidth = gridMap.getWidth();
+            for(int i = 0; i < changedTiles.size(); i++){
+                int index = changedTiles.get(i);
+                int x = index % mapWidth;
+                int y = index / mapWidth;
+                if(x < width && y < height){ drawTile(gridMap, x, y, tileSize); }
+            }
+        }
+        tileLayer.endDraw();
+
+        //Map tiles are never tinted.
+        app.tint(255, 255, 255);
+        app.image(tileLayer, 0, topReserveHeight);
+    }
+
+    /**
+     * Draw a tile into the tile layer. The pixels replace what was drawn at the position before.
+     * @param gridMap The grid map being drawn.
+     * @param x Position X on grid.
+     * @param y Position Y on grid.
+     * @param tileSize The size of a tile in pixel.
+     */
+    private void drawTile(GridMap gridMap, int x, int y, int tileSize){
+        tileLayer.set(x * tileSize, y * tileSize, scaledSprites[gridMap.getTile(x, y).ordinal()]);
+    }
+
+    /**
+     * Get a copy of a sprite resized to the tile size. Sprites that already have the size are used as they are.
+     * @param sprite The sprite to resize.
+     * @param tileSize The size of a tile in pixel.
+     * @return The resized sprite.
+     */
+    private static PImage scaleSprite(PImage sprite, int tileSize){
+        if(sprite.width == tileSize && sprite.height == tileSize){ return sprite; }
+        PImage scaled = sprite.copy();
+        scaled.resize(tileSize, tileSize);
+        return scaled;
+    }
+
+    /**
+     * Get the sprite reference according to the tile label.
+     * @param tileLabel The tile label to get sprite reference.
+     * @return Sprite reference of the tile label.
+     */
+    public PImage getSprite(TileLabel tileLabel){
+        switch(tileLabel){
+            case EMPTY:
+                return emptyImage;
+            case FILLED:
+                return filledImage;
+            case SOLID:
+                return solidImage;
+            case PATH_G:
+                return pathGreenImage;
+            case PATH_R:
+                return pathRedImage;
+            default:
+                return solidImage;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package lawnlayer.Loaders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import lawnlayer.DataClass.EnemyData;
+import lawnlayer.DataClass.LevelData;
+
+/**
+ * This is a level reader that reads a compiled binary level file made by the binary level writer.
+ * The file is mapped into memory and the tiles are kept as run lengths, so the grid map can load them without a 2d boolean array.
+ *
+ * The file layout, all numbers are big endian:
+ * magic (int) | version (short) | width (int) | height (int) | goal (float) |
+ * enemy count (int) | per enemy: type (int), random spawn (byte), spawn x (int), spawn y (int) |
+ * run count (int) | payload size (int) | payload: run lengths as unsigned varints, alternating solid and empty, starting with solid |
+ * checksum (int): CRC32 of everything before it.
+ */
+public class BinaryLevelReader {
+
+    public static final int MAGIC = 0x4C4C564C;             //"LLVL", marks a binary level file.
+    public static final short VERSION = 1;                  //The version of the file layout.
+    public static final String EXTENSION = ".lvl";          //The file extension of binary level files.
+
+    /**
+     * Read a binary level file into a level data object.
+     * @param filePath The path of the binary level file.
+     * @return Return the level data, or null if the file is missing or invalid.
+     */
+    public static LevelData read(String filePath){
+        return read(filePath, false);
+    }
+
+    /**
+     * Read a binary level file into a level data object.
+     * @param filePath The path of the binary level file.
+     * @param isHeaderOnly If true, only the size, goal and enemies are read. The tiles and the checksum are skipped.
+     * @return Return the level data, or null if the file is missing or invalid.
+     */
+    public static LevelData read(String filePath, boolean isHeaderOnly){
+        try(FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer, filePath, isHeaderOnly);
+        }catch(NoSuchFileException e){
+            System.out.println("Level map file not found!");
+            return null;
+        }catch(IOException e){
+            System.out.println("Level map file can not be read!");
+            return null;
+        }
+    }
+
+    /**
+     * Decode a binary level from a buffer.
+     * @param buffer The buffer holding the whole file, from position 0.
+     * @param outlay The path to keep in the level data.
+     * @return Return the level data, or null if the data is invalid.
+     */
+    public static LevelData decode(ByteBuffer buffer, String outlay){
+        return decode(buffer, outlay, false);
+    }
+
+    /**
+     * Decode a binary level from a buffer.
+     * @param buffer The buffer holding the whole file, from position 0.
+     * @param outlay The path to keep in the level data.
+     * @param isHeaderOnly If true, only the size, goal and enemies are read. The tiles and the checksum are skipped.
+     * @return Return the level data, or null if the data is invalid.
+     */
+    public static LevelData decode(ByteBuffer buffer, String outlay, boolean isHeaderOnly){
+        //The checksum covers everything but its own 4 bytes.
+        if(buffer.limit() < 4){
+            System.out.println("Level file invalid! File is too short.");
+            return null;
+        }
+        if(!isHeaderOnly && !isChecksumValid(buffer)){
+            System.out.println("Level file invalid! Checksum does not match.");
+            return null;
+        }
+
+        try{
+            buffer.position(0);
+            //Check the header.
+            if(buffer.getInt() != MAGIC || buffer.getShort() != VERSION){
+                System.out.println("Level file invalid! Unknown format or version.");
+                return null;
+            }
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            float goal = buffer.getFloat();
+            if(width <= 0 || height <= 0 || (long)width * height > Integer.MAX_VALUE){
+                System.out.println("Map width invalid!");
+                return null;
+            }
+
+            //Read the enemy spawn records.
+            int enemyCount = buffer.getInt();
+            if(enemyCount < 0){
+                System.out.println("Level file invalid! Enemy count is negative.");
+                return null;
+            }
+            EnemyData[] enemies = new EnemyData[enemyCount];
+            for(int i=0; i<enemyCount; i++){
+                int type = buffer.getInt();
+                boolean isRandom = buffer.get() != 0;
+                int x = buffer.getInt();
+                int y = buffer.getInt();
+                enemies[i] = isRandom ? new EnemyData(type, true) : new EnemyData(type, x, y);
+            }
+
+            //The tiles are read later, when the level is played.
+            if(isHeaderOnly){
+                return new LevelData(outlay, width, height, null, enemies, goal);
+            }
+
+            //Read the run lengths of the tiles.
+            int runCount = buffer.getInt();
+            int payloadSize = buffer.getInt();
+            if(runCount < 0 || payloadSize < 0 || payloadSize > buffer.remaining() - 4){
+                System.out.println("Level file invalid! Payload size is wrong.");
+                return null;
+            }
+            int[] runs = new int[runCount];
+            long totalTiles = 0;
+            for(int i=0; i<runCount; i++){
+                runs[i] = readVarInt(buffer);
+                totalTiles += runs[i];
+            }
+            if(totalTiles != (long)width * height){
+                System.out.println("Map height invalid!");
+                return null;
+            }
+            return new LevelData(outlay, width, height, runs, enemies, goal);
+
+        }catch(RuntimeException e){
+            //Reading past the end or a broken varint.
+            System.out.println("Level file invalid! Data is cut short.");
+            return null;
+        }
+    }
+
+    /**
+     * Check the CRC32 at the end of the file against the bytes before it.
+     * @param buffer The buffer holding the whole file.
+     * @return Return true if the checksum matches.
+     */
+    private static boolean isChecksumValid(ByteBuffer buffer){
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = buffer.duplicate();
+        checked.position(0);
+        checked.limit(buffer.limit() - 4);
+        crc.update(checked);
+        return (int)crc.getValue() == buffer.getInt(buffer.limit() - 4);
+    }
+
+    /**
+     * Read an unsigned varint, 7 bits per byte with the high bit set on every byte but the last.
+     * @param buffer The buffer to read from.
+     * @return The value read.
+     */
+    private static int readVarInt(ByteBuffer buffer){
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7){
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                if(value < 0){ throw new IllegalStateException("Run length is too long."); }
+                return value;
+            }
+        }
+        throw new IllegalStateException("Run length is too long.");
+    }
+}
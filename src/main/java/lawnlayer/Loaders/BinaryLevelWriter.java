@@ -0,0 +1,163 @@
+package lawnlayer.Loaders;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import lawnlayer.DataClass.EnemyData;
+import lawnlayer.DataClass.GameData;
+import lawnlayer.DataClass.LevelData;
+import processing.data.JSONArray;
+import processing.data.JSONObject;
+
+/**
+ * This writes levels into the compiled binary level format read by the binary level reader.
+ * It can also be run on its own to convert the text levels of a config file:
+ * java lawnlayer.Loaders.BinaryLevelWriter config.json [converted config.json]
+ * Each level*.txt is written next to itself as level*.lvl, and the converted config points the levels to the new files.
+ */
+public class BinaryLevelWriter {
+
+    /**
+     * Convert every text level in a config file into a binary level file.
+     * @param args The config path, and the path to save the converted config to. The converted config is not saved if there is no second path.
+     */
+    public static void main(String[] args){
+        if(args.length < 1){
+            System.out.println("Usage: BinaryLevelWriter <config.json> [converted config.json]");
+            System.exit(1);
+        }
+        try(FileReader reader = new FileReader(args[0])){
+            JSONObject config = new JSONObject(reader);
+            if(!convert(config)){
+                System.exit(1);
+            }
+            if(args.length > 1){
+                config.save(new File(args[1]), "indent=2");
+                System.out.println("Converted config saved to " + args[1]);
+            }
+        }catch(IOException e){
+            System.out.println("Config file can not be read!");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Write every text level of the config as a binary level, and point the levels in the config to the binary files.
+     * The map, enemies and goal are all stored in the binary file, so they are removed from the config.
+     * @param config The whole config json object, it is changed in place.
+     * @return Return false if any level could not be read or written.
+     */
+    public static boolean convert(JSONObject config){
+        GameData gameData = ConfigReader.read(config, false);
+        if(gameData == null){ return false; }
+        JSONArray levels = config.getJSONArray("levels");
+        for(int i=0; i<levels.size(); i++){
+            LevelData levelData = gameData.getLevels()[i];
+            //Binary levels are already converted.
+            if(levelData.getOutlay().endsWith(BinaryLevelReader.EXTENSION)){ continue; }
+            if(!LevelLoader.loadMap(levelData, false)){
+                System.out.println("LevelIndex: " + i + " | Level map is invalid, can not convert.");
+                return false;
+            }
+            String outlay = levelData.getOutlay();
+            int extension = outlay.lastIndexOf('.');
+            String binaryOutlay = (extension > 0 ? outlay.substring(0, extension) : outlay) + BinaryLevelReader.EXTENSION;
+            if(!write(levelData, binaryOutlay)){ return false; }
+
+            //Point the level to the binary file.
+            JSONObject level = levels.getJSONObject(i);
+            level.setString("outlay", binaryOutlay);
+            level.remove("enemies");
+            level.remove("goal");
+            level.remove("width");
+            level.remove("height");
+            System.out.println("Converted " + outlay + " to " + binaryOutlay);
+        }
+        return true;
+    }
+
+    /**
+     * Write a level into a binary level file.
+     * @param levelData The level to write.
+     * @param filePath The path of the binary level file.
+     * @return Return false if the file could not be written.
+     */
+    public static boolean write(LevelData levelData, String filePath){
+        ByteBuffer buffer = encode(levelData);
+        try(FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            while(buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+            return true;
+        }catch(IOException e){
+            System.out.println("Level file " + filePath + " can not be written!");
+            return false;
+        }
+    }
+
+    /**
+     * Encode a level into the binary level format.
+     * @param levelData The level to encode.
+     * @return A buffer holding the whole file, ready to be written.
+     */
+    public static ByteBuffer encode(LevelData levelData){
+        int[] runs = levelData.getMapRuns();
+        EnemyData[] enemies = levelData.getEnemies();
+
+        //Every varint takes at most 5 bytes.
+        int size = 4 + 2 + 4 + 4 + 4 + 4 + enemies.length * 13 + 4 + 4 + runs.length * 5 + 4;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        //Write the header.
+        buffer.putInt(BinaryLevelReader.MAGIC);
+        buffer.putShort(BinaryLevelReader.VERSION);
+        buffer.putInt(levelData.getMapWidth());
+        buffer.putInt(levelData.getMapHeight());
+        buffer.putFloat(levelData.getGoal());
+
+        //Write the enemy spawn records.
+        buffer.putInt(enemies.length);
+        for(EnemyData enemy: enemies){
+            buffer.putInt(enemy.getType());
+            buffer.put((byte)(enemy.isSpawnRandom() ? 1 : 0));
+            buffer.putInt(enemy.getSpawnX());
+            buffer.putInt(enemy.getSpawnY());
+        }
+
+        //Write the run lengths, the payload size is filled in after.
+        buffer.putInt(runs.length);
+        int payloadSizePosition = buffer.position();
+        buffer.putInt(0);
+        int payloadStart = buffer.position();
+        for(int run: runs){
+            writeVarInt(buffer, run);
+        }
+        buffer.putInt(payloadSizePosition, buffer.position() - payloadStart);
+
+        //Write the checksum of everything before it.
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int)crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Write an unsigned varint, 7 bits per byte with the high bit set on every byte but the last.
+     * @param buffer The buffer to write to.
+     * @param value The value to write, not negative.
+     */
+    private static void writeVarInt(ByteBuffer buffer, int value){
+        while((value & ~0x7F) != 0){
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+}
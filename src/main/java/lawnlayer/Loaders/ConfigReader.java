@@ -1,7 +1,9 @@
 package lawnlayer.Loaders;
 
+import java.util.ArrayList;
 import lawnlayer.GlobalSettings;
 import lawnlayer.DataClass.*;
+import lawnlayer.GeneralClass.TileLabel;
 import processing.data.JSONObject;
 import processing.data.JSONArray;
 
@@ -12,6 +14,7 @@ public class ConfigReader {
 
     /**
      * Read the config and create a game data object.
+     * Only the level details are read here. The maps are read by the level loader when they are needed.
      * @param values The whole json object to convert.
      * @param debug When this is set to true, reader will print out all data from the generated game data object to the console.
      * @return Return a game data object that stores the information of the game levels and rules.
@@ -22,6 +25,10 @@ public class ConfigReader {
         int lives = values.getInt("lives");
         JSONArray levels = values.getJSONArray("levels");
 
+        //Read the enemy types first, so the levels can be checked against them.
+        EnemyTypeRegistry enemyTypes = readEnemyTypes(values);
+        if(enemyTypes == null){ return null; }
+
         //Create an array to store all levels data.
         LevelData[] allLevelsData = new LevelData[levels.size()];
 
@@ -32,14 +39,35 @@ public class ConfigReader {
 
             //Read values from current level reading.
             String outlay = currentLevel.getString("outlay");
+
+            //Compiled levels hold their own map, enemies and goal. Only the header is read for now.
+            if(outlay.endsWith(BinaryLevelReader.EXTENSION)){
+                LevelData levelData = BinaryLevelReader.read(outlay, true);
+                if(levelData == null){
+                    System.out.println("LevelIndex: " + i + " | Compiled level is invalid!");
+                    return null;
+                }
+                //The enemy types of a compiled level are checked the same way as the types of a text level.
+                EnemyData[] compiledEnemies = levelData.getEnemies();
+                for(int t = 0; t < compiledEnemies.length; t++){
+                    if(enemyTypes.get(compiledEnemies[t].getType()) == null){
+                        System.out.println("LevelIndex: " + i + " EnemyIndex: " + t + " | Enemy type does not exist!");
+                        return null;
+                    }
+                }
+                allLevelsData[i] = levelData;
+                continue;
+            }
+
             float goal = currentLevel.getFloat("goal");
             JSONArray enemies = currentLevel.getJSONArray("enemies");
 
-            //Read the txt file from the path read
-            boolean[][] levelMap = MapReader.read(outlay, GlobalSettings.mapWidth, GlobalSettings.mapHeight, debug);
+            //Read the map size of the level, use the session map size if it is not given.
+            int mapWidth = currentLevel.getInt("width", GlobalSettings.getSession().getMapWidth());
+            int mapHeight = currentLevel.getInt("height", GlobalSettings.getSession().getMapHeight());
 
-            //Create an array to store all enemies data.
-            EnemyData[] allEnemiesData = new EnemyData[enemies.size()];
+            //Create a list to store all enemies data.
+            ArrayList<EnemyData> allEnemiesData = new ArrayList<EnemyData>();
 
             //Read the enemies data one by one.
             for(int t = 0; t < enemies.size(); t++){
@@ -48,14 +76,20 @@ public class ConfigReader {
 
                 //Read values from the current enemy reading.
                 int type = currentEnemy.getInt("type");
+                if(enemyTypes.get(type) == null){
+                    System.out.println("LevelIndex: " + i + " EnemyIndex: " + t + " | Enemy type does not exist!");
+                    return null;
+                }
                 String spawn = currentEnemy.getString("spawn");
+                //Swarm levels give a count to spawn many enemies of the same entry.
+                int count = currentEnemy.getInt("count", 1);
 
                 //Convert the data to coordinates or random bool.
                 if(spawn.equals("random")) {
                     //Create an enemy data to store the values just read.
                     EnemyData enemyData = new EnemyData(type, true);
-                    //Put the enemy data into the array.
-                    allEnemiesData[t] = enemyData;
+                    //Put the enemy data into the list.
+                    for(int c = 0; c < count; c++){ allEnemiesData.add(enemyData); }
 
                 }else{
                     //Get the coordinates
@@ -73,8 +107,8 @@ public class ConfigReader {
                         int y = Integer.parseInt(coordinates[1]);
                         //Create an enemy data to store the values just read.
                         EnemyData enemyData = new EnemyData(type, x, y);
-                        //Put the enemy data into the array.
-                        allEnemiesData[t] = enemyData;
+                        //Put the enemy data into the list.
+                        for(int c = 0; c < count; c++){ allEnemiesData.add(enemyData); }
 
                     }catch(NumberFormatException e){
                         System.out.println("LevelIndex: " + i + " EnemyIndex: " + t + " | Enemy coordinates must be integer!");
@@ -84,7 +118,7 @@ public class ConfigReader {
             }
 
             //Create a new level data to store the values just read.
-            LevelData levelData = new LevelData(outlay, levelMap, allEnemiesData, goal);
+            LevelData levelData = new LevelData(outlay, mapWidth, mapHeight, allEnemiesData.toArray(new EnemyData[0]), goal);
 
             //Put the levels data into the array.
             allLevelsData[i] = levelData;
@@ -92,7 +126,7 @@ public class ConfigReader {
 
 
         //Create a new game data object to store all game data from json file.
-        GameData gameData = new GameData(allLevelsData, lives);
+        GameData gameData = new GameData(allLevelsData, lives, enemyTypes);
 
         //For debugging, Print all the data in the game data object that is just generated.
         if(debug){ debugPrintGameData(gameData); }
@@ -101,6 +135,145 @@ public class ConfigReader {
         return gameData;
     }
 
+    /**
+     * Read the enemy types from the config. The number of a type is its position in the "enemyTypes" array.
+     * Each type gives the tile labels it can move on, if it makes red paths, if it eats filled tiles and the name of its sprite image.
+     * @param values The whole json object to read.
+     * @return Return the registry of the types, the original four types if the config has none, or null if a type is invalid.
+     */
+    public static EnemyTypeRegistry readEnemyTypes(JSONObject values){
+        if(!values.hasKey("enemyTypes")){ return EnemyTypeRegistry.createDefault(); }
+        JSONArray types = values.getJSONArray("enemyTypes");
+
+        EnemyType[] allTypes = new EnemyType[types.size()];
+        for(int t = 0; t < types.size(); t++){
+            JSONObject currentType = types.getJSONObject(t);
+            String name = currentType.getString("name", "enemy" + t);
+
+            //Turn the label names into a label mask.
+            JSONArray moveable = currentType.getJSONArray("moveable");
+            int moveableMask = 0;
+            for(int m = 0; m < moveable.size(); m++){
+                try{
+                    moveableMask |= TileLabel.valueOf(moveable.getString(m)).getBit();
+                }catch(IllegalArgumentException e){
+                    System.out.println("EnemyType: " + name + " | Moveable tile " + moveable.getString(m) + " does not exist!");
+                    return null;
+                }
+            }
+
+            int flags = 0;
+            if(currentType.getBoolean("redPath", true)){ flags |= EnemyType.CAN_MAKE_RED_PATH; }
+            if(currentType.getBoolean("eatFilled", false)){ flags |= EnemyType.CAN_EAT_FILLED_TILE; }
+            allTypes[t] = new EnemyType(t, name, moveableMask, flags, currentType.getString("sprite", "Shark"));
+        }
+        return new EnemyTypeRegistry(allTypes);
+    }
+
+    /**
+     * Read the session settings from the config and the command line.
+     * The values start from the defaults, then the "settings" object in the config, then the command line arguments.
+     * Command line arguments are written as --name=value, for example --mapWidth=512.
+     * @param values The whole json object to read, can be null.
+     * @param args The command line arguments, can be null.
+     * @return Return a settings object for the game session.
+     */
+    public static SettingsData readSettings(JSONObject values, String[] args){
+        SettingsData settings = new SettingsData();
+
+        //Read the settings in the config file.
+        if(values != null && values.hasKey("settings")){
+            JSONObject config = values.getJSONObject("settings");
+            settings.setFrameRate(config.getInt("frameRate", settings.getFrameRate()));
+            settings.setTickRate(config.getInt("tickRate", settings.getTickRate()));
+            settings.setMaxCatchUpTicks(config.getInt("maxCatchUpTicks", settings.getMaxCatchUpTicks()));
+            settings.setCanvasWidth(config.getInt("canvasWidth", settings.getCanvasWidth()));
+            settings.setCanvasHeight(config.getInt("canvasHeight", settings.getCanvasHeight()));
+            settings.setMapWidth(config.getInt("mapWidth", settings.getMapWidth()));
+            settings.setMapHeight(config.getInt("mapHeight", settings.getMapHeight()));
+            settings.setMapTileSize(config.getInt("mapTileSize", settings.getMapTileSize()));
+            settings.setTopReserveHeight(config.getInt("topReserveHeight", settings.getTopReserveHeight()));
+            settings.setParallelCaptureThreshold(config.getInt("parallelCaptureThreshold", settings.getParallelCaptureThreshold()));
+            settings.setParallelEnemyThreshold(config.getInt("parallelEnemyThreshold", settings.getParallelEnemyThreshold()));
+            settings.setCaptureBudgetMicros(config.getInt("captureBudgetMicros", settings.getCaptureBudgetMicros()));
+            settings.setPreloadLevels(config.getBoolean("preloadLevels", settings.isPreloadLevels()));
+        }
+
+        //Read the command line overrides.
+        if(args != null){
+            for(String arg : args){
+                //Skip anything that is not in the --name=value form.
+                if(!arg.startsWith("--") || !arg.contains("=")){ continue; }
+                String name = arg.substring(2, arg.indexOf('='));
+                String value = arg.substring(arg.indexOf('=') + 1);
+                //The switches take true or false, the other settings are integers.
+                if(name.equals("preloadLevels")){
+                    if(value.equals("true") || value.equals("false")){
+                        settings.setPreloadLevels(Boolean.parseBoolean(value));
+                    }else{
+                        System.out.println("Setting " + name + " must be true or false!");
+                    }
+                    continue;
+                }
+                try{
+                    applySetting(settings, name, Integer.parseInt(value));
+                }catch(NumberFormatException e){
+                    System.out.println("Setting " + name + " must be integer!");
+                }
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * Set one setting by name.
+     * @param settings The settings object to change.
+     * @param name The name of the setting.
+     * @param value The value of the setting.
+     */
+    private static void applySetting(SettingsData settings, String name, int value){
+        switch(name){
+            case "frameRate":
+                settings.setFrameRate(value);
+                break;
+            case "tickRate":
+                settings.setTickRate(value);
+                break;
+            case "maxCatchUpTicks":
+                settings.setMaxCatchUpTicks(value);
+                break;
+            case "canvasWidth":
+                settings.setCanvasWidth(value);
+                break;
+            case "canvasHeight":
+                settings.setCanvasHeight(value);
+                break;
+            case "mapWidth":
+                settings.setMapWidth(value);
+                break;
+            case "mapHeight":
+                settings.setMapHeight(value);
+                break;
+            case "mapTileSize":
+                settings.setMapTileSize(value);
+                break;
+            case "topReserveHeight":
+                settings.setTopReserveHeight(value);
+                break;
+            case "parallelCaptureThreshold":
+                settings.setParallelCaptureThreshold(value);
+                break;
+            case "parallelEnemyThreshold":
+                settings.setParallelEnemyThreshold(value);
+                break;
+            case "captureBudgetMicros":
+                settings.setCaptureBudgetMicros(value);
+                break;
+            default:
+                System.out.println("Unknown setting: " + name);
+        }
+    }
+
     /**
      * Print all data in a game data object to the console.
      * @param gameData The game data object to debug.
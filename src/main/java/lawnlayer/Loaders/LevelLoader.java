@@ -0,0 +1,116 @@
+package lawnlayer.Loaders;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import lawnlayer.DataClass.GameData;
+import lawnlayer.DataClass.LevelData;
+
+/**
+ * This reads the maps of the levels when they are needed, instead of all at once when the game starts.
+ * The config reader only reads the level details, such as the goal and the enemies. The map is read the first time the level is asked for.
+ * Work for the next level can be done on a background thread while the current level is played.
+ */
+public class LevelLoader {
+
+    //The one thread that prepares the next level of every loader. It is shared, so a program that creates many games does not leave a thread behind for each.
+    private static final ExecutorService BACKGROUND = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "LevelPrefetch");
+        //Do not keep the game running because of a prefetch.
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private GameData gameData;          //The levels to load the maps of.
+    private boolean debug;              //When this is set to true, the map reader prints out each map it reads.
+
+    /**
+     * Create a loader for the levels of the game data.
+     * @param gameData The game data read by the config reader.
+     * @param debug When this is set to true, the map reader prints out each map it reads.
+     */
+    public LevelLoader(GameData gameData, boolean debug){
+        this.gameData = gameData;
+        this.debug = debug;
+    }
+
+    /**
+     * Get a level with its map read.
+     * @param levelIndex The level to get.
+     * @return The level data. The map of the level is null if it could not be read.
+     */
+    public LevelData getLevel(int levelIndex){
+        LevelData levelData = gameData.getLevels()[levelIndex];
+        loadMap(levelData, debug);
+        return levelData;
+    }
+
+    /**
+     * Read the maps of all levels, in parallel on the common pool.
+     * @return Return false if any map could not be read.
+     */
+    public boolean loadAllMaps(){
+        LevelData[] levels = gameData.getLevels();
+        return IntStream.range(0, levels.length).parallel().allMatch(i -> loadMap(levels[i], debug));
+    }
+
+    /**
+     * Run some work for a level on the background thread, after its map is read.
+     * Only one task runs at a time, even for many loaders, so the work for the next level does not slow down the current one more than needed.
+     * @param <T> The type of the result.
+     * @param levelIndex The level to prepare.
+     * @param task The work to do once the map is read, such as setting up the grid map and enemies.
+     * @return The future result of the task.
+     */
+    public <T> Future<T> prefetch(int levelIndex, Callable<T> task){
+        return BACKGROUND.submit(() -> {
+            getLevel(levelIndex);
+            return task.call();
+        });
+    }
+
+    /**
+     * Wait for a prefetched result.
+     * @param <T> The type of the result.
+     * @param prefetched The future returned by prefetch.
+     * @return The result, or null if the work failed.
+     */
+    public static <T> T waitFor(Future<T> prefetched){
+        try{
+            return prefetched.get();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        }catch(ExecutionException e){
+            System.out.println("Level prefetch failed: " + e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Read the map of a level if it is not read yet. Text levels are read by the map reader, compiled levels by the binary level reader.
+     * The level is locked while reading, so a level asked for by two threads is only read once.
+     * @param levelData The level to read the map of.
+     * @param debug When this is set to true, the map reader prints out the map.
+     * @return Return false if the map could not be read.
+     */
+    public static boolean loadMap(LevelData levelData, boolean debug){
+        synchronized(levelData){
+            if(levelData.isMapLoaded()){ return true; }
+            if(levelData.isCompiled()){
+                LevelData compiled = BinaryLevelReader.read(levelData.getOutlay());
+                if(compiled == null){ return false; }
+                levelData.setMapRuns(compiled.getMapRuns());
+                if(debug){ MapReader.debugPrintRuns(levelData.getMapWidth(), levelData.getMapRuns()); }
+                return true;
+            }
+            boolean[][] levelMap = MapReader.read(levelData.getOutlay(), levelData.getMapWidth(), levelData.getMapHeight(), debug);
+            levelData.setLevelMap(levelMap);
+            return levelMap != null;
+        }
+    }
+}
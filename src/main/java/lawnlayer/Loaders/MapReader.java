@@ -129,4 +129,27 @@ public class MapReader {
             System.out.printf("%n");
         }
     }
+
+    /**
+     * Print the map of a compiled level to the console from its run lengths, one row at a time.
+     * The 2d boolean array is never built, so huge compiled levels stay compact.
+     * @param width The map width.
+     * @param runs The run lengths, alternating between solid and empty, starting with solid.
+     */
+    public static void debugPrintRuns(int width, int[] runs){
+        System.out.printf("%nLevelMapReaderDebug:%n");
+        StringBuilder row = new StringBuilder(width);
+        for(int i=0; i<runs.length; i++){
+            //Solid runs print an X, empty runs print a space.
+            char tile = i % 2 == 0 ? 'X' : ' ';
+            for(int t=0; t<runs[i]; t++){
+                row.append(tile);
+                //Change line at the end of each row.
+                if(row.length() == width){
+                    System.out.printf("%s%n", row);
+                    row.setLength(0);
+                }
+            }
+        }
+    }
 }
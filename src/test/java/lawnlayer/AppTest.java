@@ -47,40 +47,39 @@ public class AppTest {
         assertTrue(app.loseText!=null);
         assertTrue(app.winText!=null);
 
+        //Grid map renderer and simulation instances are not null.
+        assertTrue(app.gridMapRenderer!=null);
+        assertTrue(app.simulation!=null);
+
         //Grid map instance is not null.
-        assertTrue(app.gridMap!=null);
+        assertTrue(app.simulation.getGridMap()!=null);
 
-        //Player instance is not null.
-        assertTrue(app.player!=null);
+        //Player instance is not null, and it is given its sprite.
+        assertTrue(app.simulation.getPlayer()!=null);
+        assertTrue(app.simulation.getPlayer().getSprite()!=null);
     }
 
     @Test
     public void testAppPowerUps(){
-        App app = new App();
-
-        // Tell PApplet to create the worker threads for the program
-        PApplet.runSketch(new String[] {"App"}, app);
-        app.setup();
-
-        //to give time to initialise stuff before drawing begins
-        app.delay(1000); 
+        //The power ups are part of the simulation, so no window is needed.
+        GameSimulation simulation = GameSimulationTest.createSimulation();
 
-        float originalEnemySpeed = app.enemies[0].getSecondsPerTile();
+        float originalEnemySpeed = simulation.getEnemies().getSecondsPerTile(0);
         //Check if enemy speed is changed correctly.
-        app.enemiesChangeSpeed(0.5f, 100);
-        assertTrue(app.enemies[0].getSecondsPerTile() == originalEnemySpeed*0.5);
-        assertTrue(app.currentPowerUpTimer>0);
+        simulation.enemiesChangeSpeed(0.5f, 100);
+        assertTrue(simulation.getEnemies().getSecondsPerTile(0) == originalEnemySpeed*0.5);
+        assertTrue(simulation.getPowerUpTimer()>0);
         //Check if enemy speed is reverted.
-        app.enemiesRevertSpeed();
-        assertTrue(app.enemies[0].getSecondsPerTile() == originalEnemySpeed);
+        simulation.enemiesRevertSpeed();
+        assertTrue(simulation.getEnemies().getSecondsPerTile(0) == originalEnemySpeed);
 
-        float originalPlayerSpeed = app.player.getSecondsPerTile();
+        float originalPlayerSpeed = simulation.getPlayer().getSecondsPerTile();
         //Check if player speed is changed correctly.
-        app.playerChangeSpeed(0.5f, 100);
-        assertTrue(app.player.getSecondsPerTile() == originalPlayerSpeed*0.5);
-        assertTrue(app.currentPowerUpTimer>0);
+        simulation.playerChangeSpeed(0.5f, 100);
+        assertTrue(simulation.getPlayer().getSecondsPerTile() == originalPlayerSpeed*0.5);
+        assertTrue(simulation.getPowerUpTimer()>0);
         //Check if player speed is reverted.
-        app.playerRevertSpeed();
-        assertTrue(app.player.getSecondsPerTile() == originalPlayerSpeed);
+        simulation.playerRevertSpeed();
+        assertTrue(simulation.getPlayer().getSecondsPerTile() == originalPlayerSpeed);
     }
 }
@@ -1,7 +1,9 @@
 package lawnlayer;
 
-import processing.core.PImage;
-import lawnlayer.GameObjects.Enemy;
+import java.util.Random;
+import lawnlayer.DataClass.EnemyType;
+import lawnlayer.GameObjects.BounceTable;
+import lawnlayer.GameObjects.EnemySwarm;
 import lawnlayer.GameObjects.GridMap;
 import lawnlayer.GeneralClass.Direction;
 import lawnlayer.GeneralClass.TileLabel;
@@ -10,62 +12,305 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class EnemyTest {
-    PImage testImage;
-    GridMap gridMap;
+    GridMap gridMap = new GridMap();
+
+    /**
+     * Create a swarm with one enemy of the type on a map.
+     * @param map The grid map.
+     * @param moveableArea The tiles the enemy can move on.
+     * @param flags The flags of the enemy type.
+     * @return The swarm.
+     */
+    private EnemySwarm createSwarm(GridMap map, TileLabel[] moveableArea, int flags){
+        EnemySwarm swarm = new EnemySwarm(map, 1);
+        swarm.add(new EnemyType(0, "test", TileLabel.toMask(moveableArea), flags, "Shark"), 10, 20);
+        return swarm;
+    }
 
     @Test
     public void testConstructEnemy(){
-        Enemy enemy = new Enemy(10, 20, testImage, gridMap);
-        assertTrue(enemy.getGridPosX() == 10);
-        assertTrue(enemy.getGridPosY() == 20);
+        EnemySwarm swarm = createSwarm(gridMap, new TileLabel[]{TileLabel.EMPTY}, 0);
+        assertEquals(1, swarm.size());
+        assertTrue(swarm.getGridPosX(0) == 10);
+        assertTrue(swarm.getGridPosY(0) == 20);
+        assertEquals(EnemySwarm.SECONDS_PER_TILE, swarm.getSecondsPerTile(0));
     }
 
     @Test
     public void testGridPosGetSet(){
-        Enemy enemy = new Enemy(10, 20, testImage, gridMap);
+        EnemySwarm swarm = createSwarm(gridMap, new TileLabel[]{TileLabel.EMPTY}, 0);
+
+        swarm.setGridPos(0, 24, 18);
+
+        assertTrue(swarm.getGridPosX(0)==24);
+        assertTrue(swarm.getGridPosY(0)==18);
+    }
+
+    @Test
+    public void testMoveableArea(){
+        EnemySwarm swarm = createSwarm(gridMap, new TileLabel[]{TileLabel.EMPTY, TileLabel.FILLED}, 0);
 
-        enemy.setGridPosX(15);
-        enemy.setGridPosY(34);
+        assertTrue(swarm.isMoveableArea(0, TileLabel.EMPTY));
+        assertTrue(swarm.isMoveableArea(0, TileLabel.FILLED));
+        assertTrue(!swarm.isMoveableArea(0, TileLabel.SOLID));
+    }
+
+    @Test
+    public void testStop(){
+        EnemySwarm swarm = createSwarm(gridMap, new TileLabel[]{TileLabel.EMPTY}, 0);
+        swarm.stop(0);
+
+        assertEquals(Direction.NONE, swarm.getNextDirection(0));
+        assertEquals(Direction.NONE, swarm.getCurrentDirection(0));
+    }
+
+    @Test
+    public void testFlags(){
+        EnemySwarm swarm = createSwarm(gridMap, new TileLabel[]{TileLabel.EMPTY}, EnemyType.CAN_EAT_FILLED_TILE);
+        assertTrue((swarm.getFlags(0) & EnemyType.CAN_EAT_FILLED_TILE) != 0);
+        assertTrue((swarm.getFlags(0) & EnemyType.CAN_MAKE_RED_PATH) == 0);
+    }
 
-        assertTrue(enemy.getGridPosX()==15);
-        assertTrue(enemy.getGridPosY()==34);
+    @Test
+    public void testOccupancyFollowsEnemy(){
+        GridMap map = new GridMap();
+        EnemySwarm swarm = createSwarm(map, new TileLabel[]{TileLabel.EMPTY}, 0);
+        assertTrue(map.isEnemyAt(10, 20));
 
-        enemy.setGridPos(24, 18);
+        //The index is updated when the enemy moves.
+        swarm.setGridPos(0, 12, 5);
+        assertTrue(!map.isEnemyAt(10, 20));
+        assertTrue(map.isEnemyAt(12, 5));
+        assertEquals(1, countEnemies(map));
 
-        assertTrue(enemy.getGridPosX()==24);
-        assertTrue(enemy.getGridPosY()==18);
+        //Loading a new map clears the enemies.
+        map.loadMap(new boolean[GlobalSettings.mapHeight][GlobalSettings.mapWidth]);
+        assertTrue(!map.isEnemyAt(12, 5));
+        assertEquals(0, countEnemies(map));
     }
 
     @Test
-    public void testMoveableAreaGetSet(){
-        Enemy enemy = new Enemy(10, 20, testImage, gridMap);
-        TileLabel[] moveableArea = new TileLabel[]{TileLabel.EMPTY, TileLabel.FILLED};
+    public void testSpeedChangeReschedulesMovement(){
+        GridMap map = new GridMap();
+        EnemySwarm swarm = new EnemySwarm(map, 1);
+        swarm.add(new EnemyType(0, "test", TileLabel.toMask(new TileLabel[]{TileLabel.EMPTY}), 0, "Shark"), 10, 10);
+        int slowTicks = (int)(EnemySwarm.SECONDS_PER_TILE * (float)GlobalSettings.getSession().getTickRate()) + 1;
+
+        //The first movement only takes the starting direction.
+        for(int i=0; i<slowTicks; i++){ swarm.tick(); }
+        assertEquals(10, swarm.getGridPosX(0));
 
-        enemy.setMoveableArea(moveableArea);
+        //Halfway to the next movement the enemy gets faster, it moves as soon as the faster time has passed.
+        for(int i=0; i<slowTicks / 2; i++){ swarm.tick(); }
+        assertEquals(10, swarm.getGridPosX(0));
+        swarm.setSecondsPerTile(EnemySwarm.SECONDS_PER_TILE * 0.5f);
+        int fastTicks = (int)(EnemySwarm.SECONDS_PER_TILE * 0.5f * (float)GlobalSettings.getSession().getTickRate()) + 1;
+        for(int i=slowTicks / 2; i<fastTicks - 1; i++){ swarm.tick(); }
+        swarm.tick();
+        assertTrue(swarm.getGridPosX(0) != 10);
 
-        assertEquals(moveableArea, enemy.getMoveableArea());
+        //After slowing down, the next movement waits for the slower time.
+        int x = swarm.getGridPosX(0);
+        swarm.setSecondsPerTile(EnemySwarm.SECONDS_PER_TILE * 2.5f);
+        int slowerTicks = (int)(EnemySwarm.SECONDS_PER_TILE * 2.5f * (float)GlobalSettings.getSession().getTickRate()) + 1;
+        for(int i=0; i<slowerTicks - 1; i++){ swarm.tick(); }
+        assertEquals(x, swarm.getGridPosX(0));
+        swarm.tick();
+        assertTrue(swarm.getGridPosX(0) != x);
     }
 
     @Test
-    public void testNextDirectionGetSet(){
-        Enemy enemy = new Enemy(10, 20, testImage, gridMap);
-        enemy.stop();
+    public void testDueRingMovesOnEveryTicksPerTile(){
+        //Enemies added on different ticks each move once every ticks per tile, counted from when they were added.
+        GridMap map = createBounceMap(3);
+        EnemySwarm swarm = new EnemySwarm(map, 1);
+        EnemyType type = new EnemyType(0, "test", TileLabel.toMask(new TileLabel[]{TileLabel.EMPTY}), 0, "Shark");
+        int ticksPerTile = (int)(EnemySwarm.SECONDS_PER_TILE * (float)GlobalSettings.getSession().getTickRate()) + 1;
+        int[] addedTick = new int[20];
+        int[] lastX = new int[20];
+        int[] lastY = new int[20];
+        int[] moves = new int[20];
+        for(int tick=0; tick<900; tick++){
+            if(tick % 7 == 0 && tick / 7 < addedTick.length){
+                int i = swarm.add(type, 20 + tick / 7, 14);
+                addedTick[i] = tick;
+                lastX[i] = swarm.getGridPosX(i);
+                lastY[i] = swarm.getGridPosY(i);
+            }
+            swarm.tick();
+            for(int i=0; i<swarm.size(); i++){
+                if(swarm.getGridPosX(i) != lastX[i] || swarm.getGridPosY(i) != lastY[i]){
+                    //A move only happens on a tick the enemy is due on.
+                    assertEquals(0, (tick + 1 - addedTick[i]) % ticksPerTile);
+                    lastX[i] = swarm.getGridPosX(i);
+                    lastY[i] = swarm.getGridPosY(i);
+                    moves[i]++;
+                }
+            }
+        }
+        //Every due tick after the first one moves the enemy.
+        for(int i=0; i<swarm.size(); i++){
+            assertEquals((900 - addedTick[i]) / ticksPerTile - 1, moves[i]);
+        }
+    }
 
-        assertEquals(Direction.NONE, enemy.getNextDirection());
-        assertEquals(Direction.NONE, enemy.getCurrentDirection());
+    /**
+     * Create a map with a solid border, a block of filled tiles and a green path, seeded with the given random seed.
+     * @param seed The seed of the map.
+     * @return The grid map.
+     */
+    private GridMap createBounceMap(long seed){
+        int width = GlobalSettings.mapWidth;
+        int height = GlobalSettings.mapHeight;
+        boolean[][] mapData = new boolean[height][width];
+        for(int y=0; y<height; y++){
+            for(int x=0; x<width; x++){
+                mapData[y][x] = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+            }
+        }
+        GridMap map = new GridMap();
+        map.loadMap(mapData);
+        map.setRandom(new Random(seed));
+        for(int y=3; y<9; y++){
+            for(int x=4; x<14; x++){ map.setTile(x, y, TileLabel.FILLED); }
+        }
+        for(int x=5; x<width - 5; x++){ map.setTile(x, height - 6, TileLabel.PATH_G); }
+        return map;
     }
 
     @Test
-    public void testCanEatFilledTileGetSet(){
-        Enemy enemy = new Enemy(10, 20, testImage, gridMap);
-        enemy.setCanEatFilledTile(true);
-        assertTrue(enemy.canEatFilledTile());
+    public void testParallelSwarmMatchesSequentialThroughSpeedChange(){
+        //The same enemies in two swarms on two equal maps with the same seed, one always moves in parallel and one moves them one by one.
+        GridMap sequentialMap = createBounceMap(11);
+        GridMap parallelMap = createBounceMap(11);
+        TileLabel[][] areas = new TileLabel[][]{ {TileLabel.EMPTY}, {TileLabel.EMPTY, TileLabel.FILLED} };
+        int[] flags = new int[]{ EnemyType.CAN_MAKE_RED_PATH | EnemyType.CAN_EAT_FILLED_TILE, EnemyType.CAN_MAKE_RED_PATH, 0 };
+        EnemySwarm sequential = new EnemySwarm(sequentialMap, 4);
+        EnemySwarm parallel = new EnemySwarm(parallelMap, 4);
+        sequential.setParallelThreshold(Integer.MAX_VALUE);
+        parallel.setParallelThreshold(0);
+        for(int i=0; i<30; i++){
+            int x = 2 + i % 25;
+            int y = 10 + i % 7;
+            EnemyType type = new EnemyType(0, "test", TileLabel.toMask(areas[i % 2]), flags[i % 3], "Shark");
+            assertEquals(i, sequential.add(type, x, y));
+            assertEquals(i, parallel.add(type, x, y));
+        }
+
+        //They bounce, eat and make red paths the same way on every tick, also through speed changes.
+        for(int tick=0; tick<1200; tick++){
+            if(tick == 300){
+                sequential.setSecondsPerTile(EnemySwarm.SECONDS_PER_TILE * 0.5f);
+                parallel.setSecondsPerTile(EnemySwarm.SECONDS_PER_TILE * 0.5f);
+            }
+            sequential.tick();
+            parallel.tick();
+            for(int i=0; i<sequential.size(); i++){
+                assertEquals(sequential.getGridPosX(i), parallel.getGridPosX(i));
+                assertEquals(sequential.getGridPosY(i), parallel.getGridPosY(i));
+                assertEquals(sequential.getNextDirection(i), parallel.getNextDirection(i));
+            }
+        }
+        assertEquals(sequentialMap.getTileCount(TileLabel.FILLED), parallelMap.getTileCount(TileLabel.FILLED));
+        assertEquals(sequentialMap.getTileCount(TileLabel.PATH_R), parallelMap.getTileCount(TileLabel.PATH_R));
+        assertTrue(parallelMap.getTileCount(TileLabel.FILLED) < 60);
+
+        //The swarm is counted in the occupancy index of its map.
+        assertTrue(parallelMap.isEnemyAt(parallel.getGridPosX(0), parallel.getGridPosY(0)));
+        assertEquals(parallel.size(), countEnemies(parallelMap));
     }
 
     @Test
-    public void testCanMakeRedPathGetSet(){
-        Enemy enemy = new Enemy(10, 20, testImage, gridMap);
-        enemy.setCanMakeRedPath(false);
-        assertTrue(!enemy.canMakeRedPath());
+    public void testParallelSwarmMatchesSequential(){
+        //Two equal crowded swarms with the same seed, one always moves in parallel and one never does.
+        GridMap sequentialMap = createBounceMap(23);
+        GridMap parallelMap = createBounceMap(23);
+        EnemySwarm sequential = new EnemySwarm(sequentialMap, 2000);
+        EnemySwarm parallel = new EnemySwarm(parallelMap, 2000);
+        sequential.setParallelThreshold(Integer.MAX_VALUE);
+        parallel.setParallelThreshold(0);
+        TileLabel[][] areas = new TileLabel[][]{ {TileLabel.EMPTY}, {TileLabel.EMPTY, TileLabel.FILLED} };
+        for(int i=0; i<2000; i++){
+            int x = 1 + i % (GlobalSettings.mapWidth - 2);
+            int y = 9 + i % 13;
+            int flags = i % 3 == 0 ? EnemyType.CAN_MAKE_RED_PATH | EnemyType.CAN_EAT_FILLED_TILE : EnemyType.CAN_MAKE_RED_PATH;
+            EnemyType type = new EnemyType(0, "test", TileLabel.toMask(areas[i % 2]), flags, "Shark");
+            sequential.add(type, x, y);
+            parallel.add(type, x, y);
+        }
+
+        //Many enemies eat and redden the same tiles on the same tick, the buffers are merged the same way every time.
+        for(int tick=0; tick<600; tick++){
+            sequential.tick();
+            parallel.tick();
+            for(int i=0; i<sequential.size(); i++){
+                assertEquals(sequential.getGridPosX(i), parallel.getGridPosX(i));
+                assertEquals(sequential.getGridPosY(i), parallel.getGridPosY(i));
+                assertEquals(sequential.getNextDirection(i), parallel.getNextDirection(i));
+            }
+        }
+        for(int y=0; y<sequentialMap.getHeight(); y++){
+            for(int x=0; x<sequentialMap.getWidth(); x++){
+                assertEquals(sequentialMap.getTile(x, y), parallelMap.getTile(x, y));
+                assertEquals(sequentialMap.getEnemyOccupancy().getCount(x, y), parallelMap.getEnemyOccupancy().getCount(x, y));
+            }
+        }
+        assertTrue(parallelMap.getTileCount(TileLabel.PATH_R) > 0);
+        assertEquals(2000, countEnemies(parallelMap));
+    }
+
+    @Test
+    public void testPassableMaskAndBounceTable(){
+        //The mask has the neighbours in the map with one of the labels.
+        GridMap map = createBounceMap(5);
+        TileLabel[] area = new TileLabel[]{TileLabel.EMPTY, TileLabel.FILLED};
+        for(int y=0; y<map.getHeight(); y++){
+            for(int x=0; x<map.getWidth(); x++){
+                int expected = 0;
+                for (Direction direction : Direction.ALL) {
+                    int checkX = x + direction.X;
+                    int checkY = y + direction.Y;
+                    if(map.isOutOfMap(checkX, checkY)){ continue; }
+                    TileLabel tile = map.getTile(checkX, checkY);
+                    if(tile == TileLabel.EMPTY || tile == TileLabel.FILLED){ expected |= 1 << direction.ordinal(); }
+                }
+                assertEquals(expected, map.getPassableMask(x, y, TileLabel.toMask(area)));
+            }
+        }
+
+        //Going up right into a flat ceiling bounces down right.
+        int open = 0;
+        for (Direction direction : new Direction[]{Direction.DOWN, Direction.LEFT, Direction.RIGHT, Direction.BOTTOMLEFT, Direction.BOTTOMRIGHT}) {open |= 1 << direction.ordinal();}
+        int entry = BounceTable.lookup(open, Direction.TOPRIGHT);
+        assertEquals(1, BounceTable.getCount(entry));
+        assertTrue(!BounceTable.isRandomPick(entry));
+        assertEquals(Direction.BOTTOMRIGHT, BounceTable.getCandidate(entry, 0));
+
+        //Hitting a single block on the diagonal goes back.
+        entry = BounceTable.lookup(0xFF & ~(1 << Direction.TOPRIGHT.ordinal()), Direction.TOPRIGHT);
+        assertEquals(Direction.BOTTOMLEFT, BounceTable.getCandidate(entry, 0));
+
+        //With walls on both sides of the diagonal, the other open diagonals are picked at random, but never going back.
+        entry = BounceTable.lookup((1 << Direction.TOPLEFT.ordinal()) | (1 << Direction.BOTTOMRIGHT.ordinal()) | (1 << Direction.BOTTOMLEFT.ordinal()), Direction.TOPRIGHT);
+        assertTrue(BounceTable.isRandomPick(entry));
+        assertEquals(2, BounceTable.getCount(entry));
+        assertEquals(Direction.TOPLEFT, BounceTable.getCandidate(entry, 0));
+        assertEquals(Direction.BOTTOMRIGHT, BounceTable.getCandidate(entry, 1));
+
+        //Nothing open means stuck.
+        assertEquals(0, BounceTable.getCount(BounceTable.lookup(0, Direction.BOTTOMLEFT)));
+    }
+
+    /**
+     * Count the enemies on every tile of a map.
+     * @param map The grid map.
+     * @return The number of enemies.
+     */
+    private int countEnemies(GridMap map){
+        int count = 0;
+        for(int y=0; y<map.getHeight(); y++){
+            for(int x=0; x<map.getWidth(); x++){ count += map.getEnemyOccupancy().getCount(x, y); }
+        }
+        return count;
     }
 }
@@ -0,0 +1,380 @@
+package lawnlayer;
+
+import lawnlayer.DataClass.EnemyData;
+import lawnlayer.DataClass.EnemyType;
+import lawnlayer.DataClass.EnemyTypeRegistry;
+import lawnlayer.DataClass.GameData;
+import lawnlayer.DataClass.LevelData;
+import lawnlayer.GameObjects.EnemySwarm;
+import lawnlayer.GameObjects.GridMap;
+import lawnlayer.GameObjects.Player;
+import lawnlayer.GeneralClass.Direction;
+import lawnlayer.GeneralClass.GameState;
+import lawnlayer.GeneralClass.ScheduledTask;
+import lawnlayer.GeneralClass.TimingWheel;
+import lawnlayer.GeneralClass.TileLabel;
+import lawnlayer.Loaders.LevelLoader;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameSimulationTest {
+
+    /**
+     * Create the same levels as the default config.
+     * @return The game data.
+     */
+    static GameData createGameData(){
+        LevelData[] levels = new LevelData[]{
+            new LevelData("level1.txt", GlobalSettings.mapWidth, GlobalSettings.mapHeight,
+                new EnemyData[]{ new EnemyData(0, 5, 10), new EnemyData(1, true) }, 0.65f),
+            new LevelData("level2.txt", GlobalSettings.mapWidth, GlobalSettings.mapHeight,
+                new EnemyData[]{ new EnemyData(0, true), new EnemyData(1, true), new EnemyData(2, 15, 12), new EnemyData(3, 18, 12) }, 0.85f)
+        };
+        return new GameData(levels, 3);
+    }
+
+    /**
+     * Create a simulation with the default levels, without a window.
+     * @return A simulation on its first level.
+     */
+    static GameSimulation createSimulation(){
+        return new GameSimulation(createGameData(), false);
+    }
+
+    @Test
+    public void testSimulationConstruct(){
+        GameSimulation simulation = createSimulation();
+        assertEquals(GameState.PLAYING, simulation.getGameState());
+        assertEquals(0, simulation.getLevel());
+        assertEquals(3, simulation.getLives());
+        assertEquals(2, simulation.getEnemies().size());
+        assertTrue(simulation.getGridMap().getTile(0, 0) == TileLabel.SOLID);
+
+        //Nothing is drawn, so no sprites are given.
+        assertNull(simulation.getPlayer().getSprite());
+        assertEquals(1, simulation.getEnemies().getType(1));
+    }
+
+    @Test
+    public void testSimulationTick(){
+        GameSimulation simulation = createSimulation();
+        EnemySwarm enemies = simulation.getEnemies();
+        int startX = enemies.getGridPosX(0);
+        int startY = enemies.getGridPosY(0);
+
+        //Enemies keep moving without a window drawing them.
+        for(int i=0; i<120; i++){
+            simulation.tick();
+        }
+        assertTrue(enemies.getGridPosX(0) != startX || enemies.getGridPosY(0) != startY);
+
+        //The player walks along the border.
+        simulation.changePlayerDirection(Direction.RIGHT);
+        for(int i=0; i<60; i++){
+            simulation.tick();
+        }
+        assertTrue(simulation.getPlayer().getGridPosX() > 0);
+        assertEquals(0, simulation.getPlayer().getGridPosY());
+    }
+
+    @Test
+    public void testSimulationLivesAndLose(){
+        GameSimulation simulation = createSimulation();
+
+        //Each death costs one life.
+        for(int lives=3; lives>0; lives--){
+            simulation.getPlayer().kill();
+            simulation.tick();
+            assertEquals(lives - 1, simulation.getLives());
+            assertEquals(GameState.PLAYING, simulation.getGameState());
+        }
+
+        //Dying with no lives left loses the game, and the simulation stops.
+        simulation.getPlayer().kill();
+        simulation.tick();
+        assertEquals(GameState.LOSE, simulation.getGameState());
+        int enemyX = simulation.getEnemies().getGridPosX(0);
+        for(int i=0; i<60; i++){
+            simulation.tick();
+        }
+        assertEquals(enemyX, simulation.getEnemies().getGridPosX(0));
+    }
+
+    @Test
+    public void testSimulationLevelAdvance(){
+        GameSimulation simulation = createSimulation();
+        GridMap gridMap = simulation.getGridMap();
+
+        //Fill every empty tile, the goal is reached on the next tick.
+        for(int x=0; x<gridMap.getWidth(); x++){
+            for(int y=0; y<gridMap.getHeight(); y++){
+                if(gridMap.getTile(x, y) == TileLabel.EMPTY){ gridMap.setTile(x, y, TileLabel.FILLED); }
+            }
+        }
+        simulation.tick();
+        assertEquals(1, simulation.getLevel());
+        assertEquals(4, simulation.getEnemies().size());
+        assertEquals(0.85f, simulation.getGoal());
+
+        //Finishing the last level wins the game.
+        gridMap = simulation.getGridMap();
+        for(int x=0; x<gridMap.getWidth(); x++){
+            for(int y=0; y<gridMap.getHeight(); y++){
+                if(gridMap.getTile(x, y) == TileLabel.EMPTY){ gridMap.setTile(x, y, TileLabel.FILLED); }
+            }
+        }
+        simulation.tick();
+        assertEquals(GameState.WIN, simulation.getGameState());
+    }
+
+    @Test
+    public void testManySimulations(){
+        //Many games can be run back to back without a window.
+        for(int game=0; game<50; game++){
+            GameSimulation simulation = createSimulation();
+            simulation.changePlayerDirection(Direction.DOWN);
+            for(int i=0; i<600 && simulation.getGameState() == GameState.PLAYING; i++){
+                simulation.tick();
+            }
+            assertTrue(simulation.getLives() >= 0);
+        }
+    }
+
+    @Test
+    public void testAdvanceFixedTimestep(){
+        GameSimulation simulation = createSimulation();
+        double tickSeconds = 1.0 / GlobalSettings.getSession().getTickRate();
+
+        //Time shorter than a tick is kept until it adds up to a tick.
+        assertEquals(0, simulation.advance(tickSeconds * 0.6));
+        assertEquals(1, simulation.advance(tickSeconds * 0.6));
+        assertEquals(1, simulation.getTickCount());
+
+        //A slow frame is caught up with a bounded number of ticks, the rest is dropped.
+        int maxCatchUpTicks = GlobalSettings.getSession().getMaxCatchUpTicks();
+        assertEquals(maxCatchUpTicks, simulation.advance(tickSeconds * 100));
+        assertEquals(0, simulation.advance(0));
+
+        //A faster game runs more ticks for the same time.
+        simulation.setSpeed(4);
+        assertEquals(4, simulation.advance(tickSeconds * 1.001));
+        simulation.setSpeed(0);
+        assertEquals(0, simulation.advance(1));
+    }
+
+    @Test
+    public void testSeededSimulationRepeats(){
+        //Two games with the same seed and the same key presses play out the same.
+        GameSimulation first = new GameSimulation(createGameData(), false, 1234);
+        GameSimulation second = new GameSimulation(createGameData(), false, 1234);
+        for(int i=0; i<900; i++){
+            if(i == 30){
+                first.changePlayerDirection(Direction.DOWN);
+                second.changePlayerDirection(Direction.DOWN);
+            }
+            first.tick();
+            second.tick();
+        }
+        assertEquals(first.getLives(), second.getLives());
+        assertEquals(first.getPlayer().getGridPosY(), second.getPlayer().getGridPosY());
+        for(int i=0; i<first.getEnemies().size(); i++){
+            assertEquals(first.getEnemies().getGridPosX(i), second.getEnemies().getGridPosX(i));
+            assertEquals(first.getEnemies().getGridPosY(i), second.getEnemies().getGridPosY(i));
+        }
+        assertEquals(first.getGridMap().getTileCount(TileLabel.FILLED), second.getGridMap().getTileCount(TileLabel.FILLED));
+    }
+
+    @Test
+    public void testManySimulationsShareOnePrefetchThread(){
+        //Each simulation prefetches its next level, but they all use the same background thread.
+        for(int i=0; i<50; i++){
+            GameSimulation simulation = new GameSimulation(createGameData(), false, i);
+            simulation.loadLevel(1);
+        }
+        int prefetchThreads = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if(thread.getName().equals("LevelPrefetch")){ prefetchThreads++; }
+        }
+        assertTrue(prefetchThreads <= 1);
+    }
+
+    @Test
+    public void testBrokenLevelIsReportedWithoutExit(){
+        //The second level has no map file, an enemy of a type that does not exist, or an enemy out of the map.
+        LevelData[] brokenLevels = new LevelData[]{
+            new LevelData("missing.txt", GlobalSettings.mapWidth, GlobalSettings.mapHeight, new EnemyData[0], 0.5f),
+            new LevelData("level1.txt", GlobalSettings.mapWidth, GlobalSettings.mapHeight, new EnemyData[]{ new EnemyData(9, 5, 10) }, 0.5f),
+            new LevelData("level1.txt", GlobalSettings.mapWidth, GlobalSettings.mapHeight, new EnemyData[]{ new EnemyData(0, -5, 10) }, 0.5f)
+        };
+        for (LevelData brokenLevel : brokenLevels) {
+            GameData gameData = new GameData(new LevelData[]{ createGameData().getLevels()[0], brokenLevel }, 3);
+            GameSimulation simulation = new GameSimulation(gameData, false);
+            assertNull(simulation.prepareLevel(1, new GridMap()));
+
+            //The prefetch of the broken level fails on the background thread, the current level keeps playing.
+            LevelLoader.waitFor(new LevelLoader(gameData, false).prefetch(0, () -> true));
+            simulation.tick();
+            assertEquals(GameState.PLAYING, simulation.getGameState());
+            assertEquals(0, simulation.getLevel());
+        }
+    }
+
+    @Test
+    public void testLazyLevelLoading(){
+        //The config only reads the level details, the maps are read when their level is asked for.
+        GameData gameData = createGameData();
+        LevelLoader loader = new LevelLoader(gameData, false);
+        assertTrue(!gameData.getLevels()[0].isMapLoaded());
+        assertTrue(!gameData.getLevels()[1].isMapLoaded());
+        LevelData second = loader.getLevel(1);
+        assertTrue(second.isMapLoaded());
+        assertTrue(!gameData.getLevels()[0].isMapLoaded());
+        assertTrue(second.getLevelMap()[0][0]);
+    }
+
+    @Test
+    public void testPreloadLevels(){
+        //With the switch on, every map is read when the simulation is created.
+        GlobalSettings.getSession().setPreloadLevels(true);
+        GameData gameData = createGameData();
+        new GameSimulation(gameData, false);
+        GlobalSettings.getSession().setPreloadLevels(GlobalSettings.preloadLevels);
+        for (LevelData level : gameData.getLevels()) {
+            assertTrue(level.isMapLoaded());
+        }
+
+        //A missing map fails the preload.
+        LevelData missing = new LevelData("missing.txt", GlobalSettings.mapWidth, GlobalSettings.mapHeight, new EnemyData[0], 0.5f);
+        assertTrue(!new LevelLoader(new GameData(new LevelData[]{ createGameData().getLevels()[0], missing }, 3), false).loadAllMaps());
+    }
+
+    @Test
+    public void testPrefetchedLevelSwap(){
+        GameData twoLevels = createGameData();
+        LevelData[] levels = new LevelData[]{ twoLevels.getLevels()[0], twoLevels.getLevels()[1], createGameData().getLevels()[0] };
+        GameData gameData = new GameData(levels, 3);
+        GameSimulation simulation = new GameSimulation(gameData, false, 99);
+        GridMap firstMap = simulation.getGridMap();
+
+        //Effects and delayed spawns of the first level are running.
+        simulation.enemiesChangeSpeed(2.5f, 5000);
+        simulation.playerChangeSpeed(0.5f, 5000);
+        simulation.tick();
+        assertTrue(simulation.getScheduler().size() > 0);
+
+        //The second level was prepared on its own grid map in the background, moving to it swaps it in.
+        LevelLoader.waitFor(new LevelLoader(gameData, false).prefetch(0, () -> true));
+        assertTrue(levels[1].isMapLoaded());
+        simulation.loadLevel(1);
+        GridMap secondMap = simulation.getGridMap();
+        assertNotSame(firstMap, secondMap);
+        assertSame(secondMap, simulation.getPlayer().getGridMap());
+        assertSame(secondMap, simulation.getEnemies().getGridMap());
+        assertEquals(4, simulation.getEnemies().size());
+        assertEquals(1, simulation.getLevel());
+
+        //The effects and the scheduled tasks of the first level are gone.
+        assertEquals(0, simulation.getScheduler().size());
+        assertEquals(0, simulation.getPowerUpTimer());
+        assertEquals(Player.SECONDS_PER_TILE, simulation.getPlayer().getSecondsPerTile());
+        assertEquals(EnemySwarm.SECONDS_PER_TILE, simulation.getEnemies().getSecondsPerTile(0));
+        assertNull(simulation.getPowerUps());
+
+        //The swap started the prefetch of the third level, which is the same as one prepared on the game thread.
+        simulation.loadLevel(2);
+        assertNotSame(secondMap, simulation.getGridMap());
+        GridMap expected = simulation.prepareLevel(2, new GridMap()).getGridMap();
+        for(int i=0; i<simulation.getEnemies().size(); i++){
+            assertTrue(expected.isEnemyAt(simulation.getEnemies().getGridPosX(i), simulation.getEnemies().getGridPosY(i)));
+        }
+        assertEquals(expected.getTileCount(TileLabel.SOLID), simulation.getGridMap().getTileCount(TileLabel.SOLID));
+    }
+
+    @Test
+    public void testTimingWheel(){
+        TimingWheel wheel = new TimingWheel(8);
+        StringBuilder order = new StringBuilder();
+        wheel.schedule(3, () -> order.append("a"));
+        wheel.schedule(1, () -> order.append("b"));
+        wheel.schedule(3, () -> order.append("c"));
+        //Longer than a turn of the wheel.
+        wheel.schedule(20, () -> order.append("d"));
+        ScheduledTask cancelled = wheel.schedule(2, () -> order.append("x"));
+        assertEquals(5, wheel.size());
+        assertTrue(wheel.cancel(cancelled));
+        assertTrue(!cancelled.isScheduled());
+
+        //A task can cancel another task due on the same tick.
+        ScheduledTask[] sameTick = new ScheduledTask[1];
+        wheel.schedule(4, () -> wheel.cancel(sameTick[0]));
+        sameTick[0] = wheel.schedule(4, () -> order.append("y"));
+
+        for(int i=0; i<3; i++){ wheel.tick(); }
+        assertEquals("bac", order.toString());
+        for(int i=0; i<17; i++){ wheel.tick(); }
+        assertEquals("bacd", order.toString());
+        assertEquals(0, wheel.size());
+
+        //A task can be scheduled again, and moved before it runs.
+        ScheduledTask task = new ScheduledTask(() -> order.append("e"));
+        wheel.schedule(task, 5);
+        wheel.schedule(task, 1);
+        wheel.tick();
+        assertEquals("bacde", order.toString());
+        wheel.schedule(task, 1);
+        wheel.clear();
+        wheel.tick();
+        assertEquals("bacde", order.toString());
+    }
+
+    @Test
+    public void testPowerUpEffectsRunOnTicks(){
+        GameSimulation simulation = createSimulation();
+        EnemySwarm enemies = simulation.getEnemies();
+
+        //The effect ends after its time in ticks, without any timer thread.
+        simulation.enemiesChangeSpeed(2.5f, 100);
+        int effectTicks = GameSimulation.toTicks(100);
+        for(int i=0; i<effectTicks - 1; i++){ simulation.tick(); }
+        assertEquals(EnemySwarm.SECONDS_PER_TILE * 2.5f, enemies.getSecondsPerTile(0));
+        simulation.tick();
+        assertEquals(EnemySwarm.SECONDS_PER_TILE, enemies.getSecondsPerTile(0));
+
+        //A death ends the effects at once.
+        simulation.playerChangeSpeed(0.5f, 5000);
+        simulation.getPlayer().kill();
+        simulation.tick();
+        assertEquals(Player.SECONDS_PER_TILE, simulation.getPlayer().getSecondsPerTile());
+        assertEquals(0, simulation.getPowerUpTimer());
+
+        //A power up is spawned within ten seconds of ticks.
+        for(int i=0; i<GameSimulation.toTicks(10000) && simulation.getPowerUps() == null; i++){
+            simulation.tick();
+        }
+        assertNotNull(simulation.getPowerUps());
+    }
+
+    @Test
+    public void testEnemyTypesFromRegistry(){
+        //The original types keep their abilities.
+        EnemyTypeRegistry defaults = EnemyTypeRegistry.createDefault();
+        assertTrue(defaults.get(1).canEatFilledTile());
+        assertTrue(!defaults.get(2).canMakeRedPath());
+        assertTrue(defaults.get(3).isMoveableArea(TileLabel.FILLED));
+        assertTrue(!defaults.get(0).isMoveableArea(TileLabel.FILLED));
+        assertNull(defaults.get(4));
+
+        //A new type only needs an entry in the registry.
+        EnemyType ghost = new EnemyType(0, "ghost", TileLabel.FILLED.getBit(), EnemyType.CAN_EAT_FILLED_TILE, "Ghost");
+        LevelData level = new LevelData("level1.txt", GlobalSettings.mapWidth, GlobalSettings.mapHeight,
+            new EnemyData[]{ new EnemyData(0, true), new EnemyData(0, 3, 3) }, 0.65f);
+        GameSimulation simulation = new GameSimulation(new GameData(new LevelData[]{ level }, 3, new EnemyTypeRegistry(new EnemyType[]{ ghost })), false);
+        EnemySwarm enemies = simulation.getEnemies();
+        assertEquals(2, enemies.size());
+        assertEquals(ghost, enemies.getEnemyType(0));
+        assertEquals(EnemyType.CAN_EAT_FILLED_TILE, enemies.getFlags(1));
+        //A random spawn is on a tile the type can move on, the level starts with only solid and empty tiles so there is none.
+        assertEquals(0, enemies.getGridPosX(0));
+    }
+}
@@ -1,10 +1,24 @@
 package lawnlayer;
 
-import lawnlayer.GameObjects.Enemy;
+import lawnlayer.DataClass.EnemyData;
+import lawnlayer.DataClass.EnemyTypeRegistry;
+import lawnlayer.DataClass.LevelData;
+import lawnlayer.GameObjects.EnemySwarm;
 import lawnlayer.GameObjects.GridMap;
+import lawnlayer.GeneralClass.IntList;
+import lawnlayer.GeneralClass.IntSet;
 import lawnlayer.GeneralClass.TileLabel;
 import lawnlayer.GeneralClass.Vector2Int;
-import processing.core.PApplet;
+import lawnlayer.Loaders.BinaryLevelReader;
+import lawnlayer.Loaders.BinaryLevelWriter;
+import lawnlayer.Loaders.MapReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
@@ -13,17 +27,7 @@ public class GridMapTest {
 
     @Test
     public void testGridMapConstruct(){
-        App app = new App();
-        
-        // Tell PApplet to create the worker threads for the program
-        //app.noLoop();
-        PApplet.runSketch(new String[] {"App"}, app);
-        app.setup();
-
-        //to give time to initialise stuff before drawing begins
-        app.delay(1000); 
-
-        GridMap gridMap = new GridMap(app.emptyImage, app.filledImage, app.solidImage, app.pathGreenImage, app.pathRedImage, app);
+        GridMap gridMap = new GridMap();
         for(int x=0; x<GlobalSettings.mapWidth; x++){
             for(int y=0; y<GlobalSettings.mapHeight; y++){
                 assertTrue(gridMap.getTile(x, y)==TileLabel.EMPTY);
@@ -33,80 +37,746 @@ public class GridMapTest {
 
     @Test
     public void testGridMapFloodFill(){
-        App app = new App();
-        
-        // Tell PApplet to create the worker threads for the program.
-        //app.noLoop();
-        PApplet.runSketch(new String[] {"App"}, app);
-        app.setup();
-
-        //to give time to initialise stuff before drawing begins.
-        app.delay(1000); 
+        //The game rules run without a window.
+        GameSimulation simulation = GameSimulationTest.createSimulation();
+        GridMap gridMap = simulation.getGridMap();
         
         //Put enemy at the bottom.
-        for(Enemy enemy: app.enemies){
-            enemy.setGridPos(20, 10);
-            enemy.stop();
+        EnemySwarm enemies = simulation.getEnemies();
+        for(int i=0; i<enemies.size(); i++){
+            enemies.setGridPos(i, 20, 10);
+            enemies.stop(i);
         }
 
         //Draw a horizontal path on the map and start flood fill.
         for(int x=0; x<GlobalSettings.mapWidth; x++){
             if(x!=0 && x!=GlobalSettings.mapWidth-1){
-                app.gridMap.setTile(x, 5, TileLabel.PATH_G);
-                app.gridMap.addCurrentPathArea(new Vector2Int(x, 5));
+                gridMap.setTile(x, 5, TileLabel.PATH_G);
+                gridMap.addCurrentPathArea(new Vector2Int(x, 5));
             }
         }
-        app.gridMap.startFloodFillAroundPath();
+        gridMap.startFloodFillAroundPath();
 
         //If the area is filled, test success.
         for(int i=2; i<6; i++){
             for(int t=1; t<GlobalSettings.mapWidth; t++){
                 if(t!=GlobalSettings.mapWidth-1){
-                    assertTrue(app.gridMap.getTile(t, i)==TileLabel.FILLED);
+                    assertTrue(gridMap.getTile(t, i)==TileLabel.FILLED);
                 }
             }
         }
-        app.delay(1000);
     }
 
     @Test
     public void testRedPathPropagate(){
-        App app = new App();
-        
-        // Tell PApplet to create the worker threads for the program.
-        //app.noLoop();
-        PApplet.runSketch(new String[] {"App"}, app);
-        app.setup();
-
-        //to give time to initialise stuff before drawing begins.
-        app.delay(1000); 
+        //The game rules run without a window.
+        GameSimulation simulation = GameSimulationTest.createSimulation();
+        GridMap gridMap = simulation.getGridMap();
 
         //Put enemy at the bottom.
-        for(Enemy enemy: app.enemies){
-            enemy.setGridPos(20, 10);
-            enemy.stop();
+        EnemySwarm enemies = simulation.getEnemies();
+        for(int i=0; i<enemies.size(); i++){
+            enemies.setGridPos(i, 20, 10);
+            enemies.stop(i);
         }
 
-        app.delay(200); 
-
         //Draw a horizontal path on the map and put a red path.
         for(int x=0; x<GlobalSettings.mapWidth; x++){
             if(x!=0 && x!=GlobalSettings.mapWidth-1){
                 if(x==8){
-                    app.gridMap.setTile(x, 5, TileLabel.PATH_R);
+                    gridMap.setTile(x, 5, TileLabel.PATH_R);
                 }else{
-                    app.gridMap.setTile(x, 5, TileLabel.PATH_G);
+                    gridMap.setTile(x, 5, TileLabel.PATH_G);
                 }
-                app.gridMap.addCurrentPathArea(new Vector2Int(x, 5));
+                gridMap.addCurrentPathArea(new Vector2Int(x, 5));
             }
         }
-        app.delay(5000);
+        //Let the red path spread for five seconds of ticks.
+        for(int i=0; i<5 * GlobalSettings.tickRate; i++){
+            gridMap.tick();
+        }
 
         //Check if the path has turned to red
         for(int x=0; x<GlobalSettings.mapWidth; x++){
             if(x!=0 && x!=GlobalSettings.mapWidth-1){
-                assertTrue(app.gridMap.getTile(x, 5) == TileLabel.PATH_R);
+                assertTrue(gridMap.getTile(x, 5) == TileLabel.PATH_R);
+            }
+        }
+    }
+
+    @Test
+    public void testFillProgressCount(){
+        GridMap gridMap = new GridMap();
+        int totalTiles = GlobalSettings.mapWidth * GlobalSettings.mapHeight;
+        assertEquals(totalTiles, gridMap.getTileCount(TileLabel.EMPTY));
+
+        //Build a wall and fill a few tiles.
+        gridMap.setTile(0, 0, TileLabel.SOLID);
+        gridMap.setTile(1, 0, TileLabel.SOLID);
+        gridMap.setTile(2, 2, TileLabel.FILLED);
+        gridMap.setTile(3, 2, TileLabel.FILLED);
+        assertEquals(2, gridMap.getTileCount(TileLabel.SOLID));
+        assertEquals(2, gridMap.getTileCount(TileLabel.FILLED));
+        assertEquals(totalTiles - 2, gridMap.getFillableTileCount());
+
+        //Overwriting a tile moves it from one count to the other.
+        gridMap.setTile(3, 2, TileLabel.EMPTY);
+        assertEquals(1, gridMap.getTileCount(TileLabel.FILLED));
+        assertEquals(1f / (totalTiles - 2), gridMap.getFilledProgress());
+        assertTrue(gridMap.isGoalReached(0));
+        assertTrue(!gridMap.isGoalReached(0.5f));
+    }
+
+    @Test
+    public void testLoadMapResize(){
+        GridMap gridMap = new GridMap();
+
+        //Load a map larger than the default size.
+        boolean[][] mapData = new boolean[512][300];
+        mapData[100][200] = true;
+        gridMap.loadMap(mapData);
+
+        assertEquals(300, gridMap.getWidth());
+        assertEquals(512, gridMap.getHeight());
+        assertTrue(!gridMap.isOutOfMap(299, 511));
+        assertTrue(gridMap.isOutOfMap(300, 0));
+        assertTrue(gridMap.getTile(200, 100)==TileLabel.SOLID);
+        assertEquals(300 * 512 - 1, gridMap.getTileCount(TileLabel.EMPTY));
+    }
+
+    @Test
+    public void testChunkedHugeMap(){
+        GridMap gridMap = new GridMap();
+
+        //Load a map too large for the label position index, so the chunks are searched instead.
+        boolean[][] mapData = new boolean[1100][1000];
+        mapData[700][900] = true;
+        mapData[5][5] = true;
+        gridMap.loadMap(mapData);
+
+        assertEquals(2, gridMap.getTileCount(TileLabel.SOLID));
+        //Random positions are found in both chunks with a solid tile.
+        boolean isFirstFound = false;
+        boolean isSecondFound = false;
+        for(int i=0; i<50; i++){
+            Vector2Int spawn = gridMap.getRandomPosition(new TileLabel[]{TileLabel.SOLID});
+            assertTrue(gridMap.getTile(spawn.x, spawn.y)==TileLabel.SOLID);
+            if(spawn.x == 900){ isFirstFound = true; }
+            if(spawn.x == 5){ isSecondFound = true; }
+        }
+        assertTrue(isFirstFound && isSecondFound);
+
+        //Temporary tiles are still removed when the map has no position index.
+        gridMap.setTile(10, 1000, TileLabel.FLOODFILLED);
+        gridMap.removeTemporaryTiles();
+        assertTrue(gridMap.getTile(10, 1000)==TileLabel.EMPTY);
+        assertEquals(1000 * 1100 - 2, gridMap.getTileCount(TileLabel.EMPTY));
+    }
+
+    @Test
+    public void testParallelCaptureMatchesSequential(){
+        TileLabel[][] results = new TileLabel[2][];
+        int[] thresholds = new int[]{ Integer.MAX_VALUE, 0 };
+        for(int run=0; run<2; run++){
+            //The first run stays on one thread, the second labels every capture in parallel.
+            GlobalSettings.getSession().setParallelCaptureThreshold(thresholds[run]);
+            GridMap gridMap = new GridMap();
+
+            //A wall splits the map into a left and a right part, with a gap at the bottom.
+            boolean[][] mapData = new boolean[300][200];
+            for(int y=0; y<290; y++){
+                mapData[y][100] = true;
+            }
+            gridMap.loadMap(mapData);
+            //The enemy on the left keeps the left region empty.
+            new EnemySwarm(gridMap, 1).add(EnemyTypeRegistry.createDefault().get(0), 20, 20);
+
+            //Draw a path across the right part, above the gap.
+            for(int x=101; x<200; x++){
+                gridMap.setTile(x, 150, TileLabel.PATH_G);
+                gridMap.addCurrentPathArea(new Vector2Int(x, 150));
+            }
+            gridMap.startFloodFillAroundPath();
+
+            results[run] = new TileLabel[200 * 300];
+            for(int y=0; y<300; y++){
+                for(int x=0; x<200; x++){
+                    results[run][y * 200 + x] = gridMap.getTile(x, y);
+                }
+            }
+            //The region above the path is closed, the one below joins the left part through the gap.
+            assertTrue(gridMap.getTile(150, 10)==TileLabel.FILLED);
+            assertTrue(gridMap.getTile(150, 200)==TileLabel.EMPTY);
+            assertTrue(gridMap.getTile(150, 150)==TileLabel.FILLED);
+        }
+        GlobalSettings.getSession().setParallelCaptureThreshold(GlobalSettings.parallelCaptureThreshold);
+        assertArrayEquals(results[0], results[1]);
+    }
+
+    @Test
+    public void testTimeSlicedCapture(){
+        //Give each tick a tiny budget so the capture is spread over many ticks.
+        GlobalSettings.getSession().setCaptureBudgetMicros(1);
+        GridMap gridMap = new GridMap();
+        boolean[][] mapData = new boolean[200][200];
+        gridMap.loadMap(mapData);
+        new EnemySwarm(gridMap, 1).add(EnemyTypeRegistry.createDefault().get(0), 20, 190);
+
+        //Draw a path across the map.
+        for(int x=0; x<200; x++){
+            gridMap.setTile(x, 100, TileLabel.PATH_G);
+            gridMap.addCurrentPathArea(new Vector2Int(x, 100));
+        }
+        gridMap.startFloodFillAroundPath();
+
+        //The path is filled at once, the regions are not yet.
+        assertTrue(gridMap.isCapturing());
+        assertTrue(gridMap.getTile(50, 100)==TileLabel.FILLED);
+        assertTrue(gridMap.getTile(50, 50)==TileLabel.EMPTY);
+
+        int ticks = 0;
+        while(gridMap.isCapturing() && ticks < 100000){
+            gridMap.tick();
+            ticks++;
+        }
+        GlobalSettings.getSession().setCaptureBudgetMicros(GlobalSettings.captureBudgetMicros);
+
+        //The region without enemy is filled, the one with the enemy is not.
+        assertTrue(!gridMap.isCapturing());
+        assertTrue(gridMap.getTile(50, 50)==TileLabel.FILLED);
+        assertTrue(gridMap.getTile(50, 150)==TileLabel.EMPTY);
+        assertEquals(200 * 101, gridMap.getTileCount(TileLabel.FILLED));
+    }
+
+    @Test
+    public void testCompiledLevelRoundTrip(){
+        //Make a level with a bounding wall and a few random walls inside.
+        boolean[][] mapData = new boolean[90][120];
+        java.util.Random random = new java.util.Random(7);
+        for(int y=0; y<90; y++){
+            for(int x=0; x<120; x++){
+                mapData[y][x] = y == 0 || x == 0 || y == 89 || x == 119 || random.nextInt(10) == 0;
+            }
+        }
+        EnemyData[] enemies = new EnemyData[]{ new EnemyData(0, 5, 10), new EnemyData(1, true) };
+        LevelData levelData = new LevelData("level.txt", mapData, enemies, 0.7f);
+
+        //Encode and decode the level.
+        ByteBuffer buffer = BinaryLevelWriter.encode(levelData);
+        LevelData compiled = BinaryLevelReader.decode(buffer, "level.lvl");
+        assertTrue(compiled != null && compiled.isCompiled());
+        assertEquals(0.7f, compiled.getGoal());
+        assertEquals(2, compiled.getEnemies().length);
+        assertEquals(10, compiled.getEnemies()[0].getSpawnY());
+        assertTrue(compiled.getEnemies()[1].isSpawnRandom());
+
+        //The map loaded from the runs is the same as the map loaded from the text level.
+        GridMap gridMap = new GridMap();
+        gridMap.loadMap(compiled.getMapWidth(), compiled.getMapHeight(), compiled.getMapRuns());
+        for(int y=0; y<90; y++){
+            for(int x=0; x<120; x++){
+                assertTrue(gridMap.getTile(x, y)==(mapData[y][x] ? TileLabel.SOLID : TileLabel.EMPTY));
             }
         }
+
+        //The debug print from the runs is the same as the print of the map.
+        PrintStream console = System.out;
+        ByteArrayOutputStream fromRuns = new ByteArrayOutputStream();
+        ByteArrayOutputStream fromMap = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(fromRuns));
+        MapReader.debugPrintRuns(compiled.getMapWidth(), compiled.getMapRuns());
+        System.setOut(new PrintStream(fromMap));
+        MapReader.debugPrintMap(mapData);
+        System.setOut(console);
+        assertEquals(fromMap.toString(), fromRuns.toString());
+
+        //A broken file is rejected by the checksum.
+        buffer.put(20, (byte)(buffer.get(20) ^ 1));
+        assertTrue(BinaryLevelReader.decode(buffer, "level.lvl")==null);
+    }
+
+    @Test
+    public void testPrimitiveCoordinates(){
+        //The set gives the same answers as a boxed hash set, with removes and clears mixed in.
+        IntSet set = new IntSet(4);
+        HashSet<Integer> expected = new HashSet<Integer>();
+        Random random = new Random(3);
+        for(int i=0; i<20000; i++){
+            int value = random.nextInt(2000) * 37;
+            if(random.nextInt(3) == 0){
+                assertEquals(expected.remove(value), set.remove(value));
+            }else{
+                assertEquals(expected.add(value), set.add(value));
+            }
+            assertEquals(expected.size(), set.size());
+            if(i % 5000 == 4999){
+                set.clear();
+                expected.clear();
+            }
+        }
+        for(int value=0; value<2000 * 37; value++){
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+
+        //The list grows and keeps its values in order.
+        IntList list = new IntList(1);
+        for(int i=0; i<100; i++){ list.add(i * 3); }
+        assertEquals(100, list.size());
+        assertEquals(297, list.getLast());
+        assertEquals(297, list.removeLast());
+        assertEquals(30, list.get(10));
+
+        //Equal vectors have the same hash.
+        HashSet<Vector2Int> vectors = new HashSet<Vector2Int>();
+        vectors.add(new Vector2Int(4, 7));
+        assertTrue(vectors.contains(new Vector2Int(4, 7)));
+
+        //The path is kept as packed tile indices.
+        GridMap gridMap = new GridMap();
+        gridMap.addCurrentPathArea(6, 5);
+        gridMap.addCurrentPathArea(new Vector2Int(7, 5));
+        assertEquals(5 * gridMap.getWidth() + 6, gridMap.getCurrentPathArea().get(0));
+        assertEquals(5 * gridMap.getWidth() + 7, gridMap.getCurrentPathArea().getLast());
+        assertTrue(gridMap.getTile(gridMap.getCurrentPathArea().get(0)) == gridMap.getTile(6, 5));
+    }
+
+    @Test
+    public void testIsTileIn(){
+        //A map with random walls and labels.
+        GridMap gridMap = new GridMap();
+        boolean[][] mapData = new boolean[70][150];
+        Random random = new Random(11);
+        for(int y=0; y<70; y++){
+            for(int x=0; x<150; x++){
+                mapData[y][x] = random.nextInt(4) == 0;
+            }
+        }
+        gridMap.loadMap(mapData);
+        TileLabel[] labels = TileLabel.values();
+        for(int i=0; i<5000; i++){
+            gridMap.setTile(random.nextInt(150), random.nextInt(70), labels[random.nextInt(labels.length)]);
+        }
+
+        //The mask check matches the label of every tile.
+        for(int i=0; i<20; i++){
+            int mask = random.nextInt(1 << labels.length);
+            for(int y=0; y<70; y++){
+                for(int x=0; x<150; x++){
+                    assertEquals((mask & gridMap.getTile(x, y).getBit()) != 0, gridMap.isTileIn(x, y, mask));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParallelCaptureMatchesSequentialOnRandomWalls(){
+        TileLabel[][] results = new TileLabel[2][];
+        int[] thresholds = new int[]{ Integer.MAX_VALUE, 0 };
+        for(int run=0; run<2; run++){
+            GlobalSettings.getSession().setParallelCaptureThreshold(thresholds[run]);
+            GridMap gridMap = new GridMap();
+            //Scattered walls make many short runs in every row.
+            boolean[][] mapData = new boolean[130][190];
+            Random random = new Random(5);
+            for(int y=0; y<130; y++){
+                for(int x=0; x<190; x++){
+                    mapData[y][x] = random.nextInt(3) == 0;
+                }
+            }
+            gridMap.loadMap(mapData);
+            new EnemySwarm(gridMap, 1).add(EnemyTypeRegistry.createDefault().get(0), 7, 7);
+            for(int x=0; x<190; x++){
+                gridMap.setTile(x, 65, TileLabel.PATH_G);
+                gridMap.addCurrentPathArea(x, 65);
+            }
+            gridMap.startFloodFillAroundPath();
+            results[run] = new TileLabel[190 * 130];
+            for(int y=0; y<130; y++){
+                for(int x=0; x<190; x++){
+                    results[run][y * 190 + x] = gridMap.getTile(x, y);
+                }
+            }
+        }
+        GlobalSettings.getSession().setParallelCaptureThreshold(GlobalSettings.parallelCaptureThreshold);
+        assertArrayEquals(results[0], results[1]);
+    }
+
+    /**
+     * Create map data with a solid border and random walls inside.
+     * @param width Map width.
+     * @param height Map height.
+     * @param seed The seed of the walls.
+     * @param wallChance One in how many tiles inside is a wall, 0 for no walls inside.
+     * @return The map data.
+     */
+    private static boolean[][] createWalledMap(int width, int height, long seed, int wallChance){
+        boolean[][] mapData = new boolean[height][width];
+        Random random = new Random(seed);
+        for(int y=0; y<height; y++){
+            for(int x=0; x<width; x++){
+                boolean isBorder = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+                mapData[y][x] = isBorder || (wallChance > 0 && random.nextInt(wallChance) == 0);
+            }
+        }
+        return mapData;
+    }
+
+    /**
+     * Find the empty tiles connected to a tile through its four sides, one tile at a time.
+     * @param gridMap The grid map.
+     * @param startX The position X to start from.
+     * @param startY The position Y to start from.
+     * @return A flag for every tile index, true if the tile is in the region.
+     */
+    private static boolean[] findEmptyRegion(GridMap gridMap, int startX, int startY){
+        int width = gridMap.getWidth();
+        boolean[] isInRegion = new boolean[width * gridMap.getHeight()];
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        isInRegion[startY * width + startX] = true;
+        queue.add(startY * width + startX);
+        while(!queue.isEmpty()){
+            int index = queue.poll();
+            int[] neighbours = new int[]{ index - width, index + width, index - 1, index + 1 };
+            for (int next : neighbours) {
+                if(next < 0 || next >= isInRegion.length || isInRegion[next]){ continue; }
+                //Do not wrap around to the other side of the map.
+                if(Math.abs(next % width - index % width) > 1){ continue; }
+                if(gridMap.getTile(next) != TileLabel.EMPTY){ continue; }
+                isInRegion[next] = true;
+                queue.add(next);
+            }
+        }
+        return isInRegion;
+    }
+
+    @Test
+    public void testScanlineFillLargeRegion(){
+        //One region of almost a million tiles, far deeper than a recursive fill could go on the stack.
+        GridMap gridMap = new GridMap();
+        gridMap.loadMap(createWalledMap(1000, 1000, 1, 0));
+        assertTrue(gridMap.startFloodFill(500, 500));
+        assertEquals(998 * 998, gridMap.getTileCount(TileLabel.FILLED));
+        assertEquals(0, gridMap.getTileCount(TileLabel.EMPTY));
+    }
+
+    @Test
+    public void testScanlineFillMatchesTileByTileFill(){
+        for(int seed=0; seed<10; seed++){
+            GridMap gridMap = new GridMap();
+            gridMap.loadMap(createWalledMap(40, 30, seed, 3));
+            int startX = 20;
+            int startY = 15;
+            gridMap.setTile(startX, startY, TileLabel.EMPTY);
+            boolean[] expected = findEmptyRegion(gridMap, startX, startY);
+
+            //Every tile of the region is filled and nothing else changes.
+            assertTrue(gridMap.startFloodFill(startX, startY));
+            for(int i=0; i<expected.length; i++){
+                if(expected[i]){
+                    assertTrue(gridMap.getTile(i)==TileLabel.FILLED);
+                }else{
+                    assertTrue(gridMap.getTile(i)!=TileLabel.FILLED);
+                }
+            }
+        }
+
+        //A region with an enemy in it is marked as flood filled instead.
+        GridMap gridMap = new GridMap();
+        gridMap.loadMap(createWalledMap(40, 30, 0, 0));
+        new EnemySwarm(gridMap, 1).add(EnemyTypeRegistry.createDefault().get(0), 3, 3);
+        assertTrue(!gridMap.startFloodFill(20, 15));
+        assertEquals(38 * 28, gridMap.getTileCount(TileLabel.FLOODFILLED));
+        assertTrue(!gridMap.startFloodFill(0, 0));
+    }
+
+    @Test
+    public void testPackedTileStorageRoundTrip(){
+        int[][] mapSizes = new int[][]{ {64, 32}, {37, 23} };
+        for (int[] mapSize : mapSizes) {
+            int width = mapSize[0];
+            int height = mapSize[1];
+            GridMap gridMap = new GridMap();
+            gridMap.loadMap(new boolean[height][width]);
+            //The corners, the middle of each edge and the middle of the map.
+            int[][] positions = new int[][]{
+                {0, 0}, {width - 1, 0}, {0, height - 1}, {width - 1, height - 1},
+                {width / 2, 0}, {width / 2, height - 1}, {0, height / 2}, {width - 1, height / 2},
+                {width / 2, height / 2}
+            };
+            for (int[] position : positions) {
+                int x = position[0];
+                int y = position[1];
+                for (TileLabel label : TileLabel.values()) {
+                    gridMap.setTile(x, y, label);
+                    assertEquals(label, gridMap.getTile(x, y));
+                    assertEquals(label, gridMap.getTile(y * width + x));
+                }
+                gridMap.setTile(x, y, TileLabel.EMPTY);
+                gridMap.clearCurrentPathArea();
+            }
+            //The stored labels do not leak into the tiles around them.
+            gridMap.setTile(width - 1, 0, TileLabel.FLOODFILLED);
+            gridMap.setTile(0, 1, TileLabel.SOLID);
+            for(int i=0; i<width*height; i++){
+                TileLabel expected = TileLabel.EMPTY;
+                if(i == width - 1){ expected = TileLabel.FLOODFILLED; }
+                if(i == width){ expected = TileLabel.SOLID; }
+                assertEquals(expected, gridMap.getTile(i));
+            }
+            assertEquals(width * height - 2, gridMap.getTileCount(TileLabel.EMPTY));
+        }
+    }
+
+    /**
+     * Load a map with random walls, some enemies and a cross shaped path, the same for the same seed.
+     * @param gridMap The grid map.
+     * @param seed The seed of the walls and the enemies.
+     */
+    private static void loadCaptureMap(GridMap gridMap, long seed){
+        int width = 60;
+        int height = 40;
+        gridMap.loadMap(createWalledMap(width, height, seed, 4));
+        Random random = new Random(seed);
+        EnemySwarm enemySwarm = new EnemySwarm(gridMap, 3);
+        for(int i=0; i<3; i++){
+            int x = 1 + random.nextInt(width - 2);
+            int y = 1 + random.nextInt(height - 2);
+            gridMap.setTile(x, y, TileLabel.EMPTY);
+            enemySwarm.add(EnemyTypeRegistry.createDefault().get(0), x, y);
+        }
+        for(int x=1; x<width-1; x++){
+            gridMap.setTile(x, height / 2, TileLabel.PATH_G);
+            gridMap.addCurrentPathArea(x, height / 2);
+        }
+        for(int y=1; y<height-1; y++){
+            if(y == height / 2){ continue; }
+            gridMap.setTile(width / 3, y, TileLabel.PATH_G);
+            gridMap.addCurrentPathArea(width / 3, y);
+        }
+    }
+
+    @Test
+    public void testOnePassCaptureMatchesPerRegionFill(){
+        for(int seed=0; seed<10; seed++){
+            GridMap gridMap = new GridMap();
+            loadCaptureMap(gridMap, seed);
+            gridMap.startFloodFillAroundPath();
+
+            //Fill the regions around the path one by one, the way it was done before the regions were labeled in one pass.
+            GridMap expectedMap = new GridMap();
+            loadCaptureMap(expectedMap, seed);
+            IntList path = expectedMap.getCurrentPathArea();
+            for(int p=0; p<path.size(); p++){
+                int x = path.get(p) % expectedMap.getWidth();
+                int y = path.get(p) / expectedMap.getWidth();
+                int[][] sides = new int[][]{ {x, y - 1}, {x, y + 1}, {x - 1, y}, {x + 1, y} };
+                for (int[] side : sides) {
+                    if(expectedMap.getTile(side[0], side[1]) == TileLabel.EMPTY){
+                        expectedMap.startFloodFill(side[0], side[1]);
+                    }
+                }
+            }
+            expectedMap.removeTiles(new TileLabel[]{ TileLabel.FLOODFILLED });
+            expectedMap.fillPathArea();
+
+            int filledTiles = 0;
+            for(int i=0; i<expectedMap.getWidth()*expectedMap.getHeight(); i++){
+                assertEquals(expectedMap.getTile(i), gridMap.getTile(i));
+                if(gridMap.getTile(i) == TileLabel.FILLED){ filledTiles++; }
+            }
+            assertEquals(filledTiles, gridMap.getTileCount(TileLabel.FILLED));
+            assertEquals(0, gridMap.getTileCount(TileLabel.FLOODFILLED));
+        }
+    }
+
+    @Test
+    public void testLabelIndexThroughTileChurn(){
+        GridMap gridMap = new GridMap();
+        gridMap.loadMap(createWalledMap(50, 40, 3, 5));
+        gridMap.setRandom(new Random(3));
+        Random random = new Random(7);
+        TileLabel[] labels = TileLabel.values();
+        for(int round=0; round<20; round++){
+            //Change many tiles, some of them more than once and some to the label they already have.
+            for(int i=0; i<500; i++){
+                gridMap.setTile(random.nextInt(50), random.nextInt(40), labels[random.nextInt(labels.length)]);
+            }
+
+            for (TileLabel label : labels) {
+                int expectedCount = 0;
+                for(int i=0; i<50*40; i++){
+                    if(gridMap.getTile(i) == label){ expectedCount++; }
+                }
+                assertEquals(expectedCount, gridMap.getTileCount(label));
+                //Every tile with the label is in the index exactly once.
+                HashSet<Integer> indexedTiles = new HashSet<Integer>();
+                for(int i=0; i<gridMap.getTileCount(label); i++){
+                    int index = gridMap.getTileIndex(label, i);
+                    assertEquals(label, gridMap.getTile(index));
+                    assertTrue(indexedTiles.add(index));
+                }
+            }
+
+            //Random positions are only picked from the tiles with the labels asked for.
+            int labelMask = TileLabel.EMPTY.getBit() | TileLabel.PATH_G.getBit();
+            for(int i=0; i<50; i++){
+                Vector2Int position = gridMap.getRandomPosition(labelMask);
+                assertTrue(gridMap.isTileIn(position.x, position.y, labelMask));
+            }
+            Vector2Int position = gridMap.getRandomPosition(new TileLabel[]{ TileLabel.FLOODFILLED });
+            assertEquals(TileLabel.FLOODFILLED, gridMap.getTile(position.x, position.y));
+        }
+    }
+
+    /**
+     * Load a map with every kind of tile: a strip on the right with an enemy that a failed capture marked as flood filled,
+     * a green path with red parts across the map and some filled and solid tiles.
+     * @param gridMap The grid map.
+     * @param width Map width.
+     * @param height Map height.
+     */
+    private static void loadTemporaryTilesMap(GridMap gridMap, int width, int height){
+        boolean[][] mapData = createWalledMap(width, height, 0, 0);
+        for(int y=0; y<height; y++){ mapData[y][width - 10] = true; }
+        gridMap.loadMap(mapData);
+        new EnemySwarm(gridMap, 1).add(EnemyTypeRegistry.createDefault().get(0), width - 5, height - 5);
+        assertTrue(!gridMap.startFloodFill(width - 5, 5));
+
+        for(int x=1; x<width-10; x++){
+            gridMap.setTile(x, height / 2, TileLabel.PATH_G);
+            gridMap.addCurrentPathArea(x, height / 2);
+        }
+        gridMap.setTile(1, height / 2, TileLabel.PATH_R);
+        gridMap.setTile(width / 2, height / 2, TileLabel.PATH_R);
+        gridMap.setTile(width - 11, height / 2, TileLabel.PATH_R);
+        for(int x=1; x<width-10; x++){
+            gridMap.setTile(x, 1, TileLabel.FILLED);
+            gridMap.setTile(x, height - 2, TileLabel.FILLED);
+        }
+        gridMap.setTile(width / 2, height / 4, TileLabel.SOLID);
+    }
+
+    /**
+     * Get the labels the map should have once the temporary tiles are removed.
+     * @param gridMap The grid map.
+     * @return The label of every tile index, with the temporary tiles set to empty.
+     */
+    private static TileLabel[] getLabelsWithoutTemporaryTiles(GridMap gridMap){
+        TileLabel[] labels = new TileLabel[gridMap.getWidth() * gridMap.getHeight()];
+        for(int i=0; i<labels.length; i++){
+            TileLabel label = gridMap.getTile(i);
+            boolean isTemporary = label == TileLabel.FLOODFILLED || label == TileLabel.PATH_G || label == TileLabel.PATH_R;
+            labels[i] = isTemporary ? TileLabel.EMPTY : label;
+        }
+        return labels;
+    }
+
+    @Test
+    public void testRemoveTemporaryTiles(){
+        //The second map is too big for the label index, so the chunks are searched instead.
+        int[][] mapSizes = new int[][]{ {64, 32}, {1100, 1000} };
+        for (int[] mapSize : mapSizes) {
+            GridMap gridMap = new GridMap();
+            loadTemporaryTilesMap(gridMap, mapSize[0], mapSize[1]);
+            assertTrue(gridMap.getTileCount(TileLabel.FLOODFILLED) > 0);
+            assertEquals(3, gridMap.getTileCount(TileLabel.PATH_R));
+            TileLabel[] expected = getLabelsWithoutTemporaryTiles(gridMap);
+            int filledTiles = gridMap.getTileCount(TileLabel.FILLED);
+            int solidTiles = gridMap.getTileCount(TileLabel.SOLID);
+
+            gridMap.removeTemporaryTiles();
+            for(int i=0; i<expected.length; i++){
+                assertEquals(expected[i], gridMap.getTile(i));
+            }
+            assertEquals(0, gridMap.getTileCount(TileLabel.FLOODFILLED));
+            assertEquals(0, gridMap.getTileCount(TileLabel.PATH_G));
+            assertEquals(0, gridMap.getTileCount(TileLabel.PATH_R));
+            assertEquals(filledTiles, gridMap.getTileCount(TileLabel.FILLED));
+            assertEquals(solidTiles, gridMap.getTileCount(TileLabel.SOLID));
+        }
+        assertTrue(1100 * 1000 > GridMap.POSITION_INDEX_MAX_TILES);
+    }
+
+    /**
+     * Create an empty map with a green path drawn along a row, some of it already red.
+     * @param length The number of path tiles, drawn from x = 1.
+     * @param redTiles The positions in the path that are red.
+     * @return The grid map.
+     */
+    private static GridMap createRedPathMap(int length, int[] redTiles){
+        GridMap gridMap = new GridMap();
+        gridMap.loadMap(new boolean[32][64]);
+        for(int x=1; x<=length; x++){
+            gridMap.setTile(x, 5, TileLabel.PATH_G);
+            gridMap.addCurrentPathArea(x, 5);
+        }
+        for (int redTile : redTiles) {
+            gridMap.setTile(redTile + 1, 5, TileLabel.PATH_R);
+        }
+        return gridMap;
+    }
+
+    /**
+     * Check which tiles of the path drawn by createRedPathMap are red.
+     * @param gridMap The grid map.
+     * @param length The number of path tiles.
+     * @param firstRed The position in the path of the first red tile.
+     * @param lastRed The position in the path of the last red tile.
+     */
+    private static void assertRedPath(GridMap gridMap, int length, int firstRed, int lastRed){
+        for(int p=0; p<length; p++){
+            TileLabel expected = p >= firstRed && p <= lastRed ? TileLabel.PATH_R : TileLabel.PATH_G;
+            assertEquals(expected, gridMap.getTile(p + 1, 5));
+        }
+    }
+
+    @Test
+    public void testRedPathFronts(){
+        //A red tile in the middle spreads one tile each way on every spread.
+        GridMap gridMap = createRedPathMap(21, new int[]{ 10 });
+        for(int k=1; k<=10; k++){
+            gridMap.spreadRedPath();
+            assertRedPath(gridMap, 21, 10 - k, 10 + k);
+        }
+
+        //The ends of the path only spread inwards.
+        gridMap = createRedPathMap(21, new int[]{ 0 });
+        for(int k=1; k<=5; k++){
+            gridMap.spreadRedPath();
+            assertRedPath(gridMap, 21, 0, k);
+        }
+        gridMap = createRedPathMap(21, new int[]{ 20 });
+        for(int k=1; k<=5; k++){
+            gridMap.spreadRedPath();
+            assertRedPath(gridMap, 21, 20 - k, 20);
+        }
+
+        //A front that just reached the end of the path keeps spreading onto the path drawn after it.
+        gridMap = createRedPathMap(5, new int[]{ 2 });
+        gridMap.spreadRedPath();
+        gridMap.spreadRedPath();
+        assertRedPath(gridMap, 5, 0, 4);
+        gridMap.setTile(6, 5, TileLabel.PATH_G);
+        gridMap.addCurrentPathArea(6, 5);
+        gridMap.spreadRedPath();
+        assertRedPath(gridMap, 6, 0, 5);
+
+        //Once a front can not spread any more it is removed, so a newer path tile stays green.
+        gridMap.spreadRedPath();
+        gridMap.setTile(7, 5, TileLabel.PATH_G);
+        gridMap.addCurrentPathArea(7, 5);
+        gridMap.spreadRedPath();
+        assertRedPath(gridMap, 7, 0, 5);
+
+        //Two fronts that meet stop at each other's red tiles and are removed as well.
+        gridMap = createRedPathMap(9, new int[]{ 0, 8 });
+        for(int k=0; k<6; k++){
+            gridMap.spreadRedPath();
+        }
+        assertRedPath(gridMap, 9, 0, 8);
+        gridMap.setTile(10, 5, TileLabel.PATH_G);
+        gridMap.addCurrentPathArea(10, 5);
+        gridMap.spreadRedPath();
+        assertRedPath(gridMap, 10, 0, 8);
     }
 }
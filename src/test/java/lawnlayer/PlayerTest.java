@@ -1,6 +1,5 @@
 package lawnlayer;
 
-import processing.core.PApplet;
 import processing.core.PImage;
 import lawnlayer.GameObjects.GridMap;
 import lawnlayer.GameObjects.Player;
@@ -66,36 +65,54 @@ public class PlayerTest {
 
     @Test
     public void testPlayerSituationCheck(){
-        App app = new App();
+        //The game rules run without a window.
+        GameSimulation simulation = GameSimulationTest.createSimulation();
+        GridMap gridMap = simulation.getGridMap();
         
-        // Tell PApplet to create the worker threads for the program.
-        //app.noLoop();
-        PApplet.runSketch(new String[] {"App"}, app);
-        app.setup();
-
-        //to give time to initialise stuff before drawing begins.
-        app.delay(1000); 
-        
-        Player player = new Player(2, 2, testImage, app.gridMap);
+        Player player = new Player(2, 2, testImage, gridMap);
 
         //Put enemy at 2,2 and check dead at 2,2 
-        app.enemies[0].setGridPos(2, 2);
+        simulation.getEnemies().setGridPos(0, 2, 2);
         assertTrue(player.checkDead(2, 2));
 
         //Put a path at 4,4 and check dead
-        app.gridMap.setTile(4, 4, TileLabel.PATH_G);
+        gridMap.setTile(4, 4, TileLabel.PATH_G);
         assertTrue(player.checkDead(4, 4));
         
         //Create a small path and add a red one at the end, check dead
-        app.gridMap.addCurrentPathArea(new Vector2Int(6, 6));
-        app.gridMap.addCurrentPathArea(new Vector2Int(6, 7));
-        app.gridMap.setTile(6, 7, TileLabel.PATH_R);
+        gridMap.addCurrentPathArea(new Vector2Int(6, 6));
+        gridMap.addCurrentPathArea(new Vector2Int(6, 7));
+        gridMap.setTile(6, 7, TileLabel.PATH_R);
         assertTrue(player.checkDead(0, 0));
 
         //Create a solid tile at 8,8 and put player at 8,8, check movement
-        app.gridMap.setTile(8, 8, TileLabel.SOLID);
-        app.player.setGridPos(8, 8);
-        app.player.checkMovement(8, 8);
+        gridMap.setTile(8, 8, TileLabel.SOLID);
+        simulation.getPlayer().setGridPos(8, 8);
+        simulation.getPlayer().checkMovement(8, 8);
         assertTrue(player.getNextDirection()==Direction.NONE);
     }
+
+    @Test
+    public void testKillRemovesTemporaryTiles(){
+        GridMap gridMap = new GridMap();
+        gridMap.loadMap(new boolean[32][64]);
+        Player player = new Player(2, 2, testImage, gridMap);
+
+        //A filled area, a failed capture and a path with a red part.
+        gridMap.setTile(1, 1, TileLabel.FILLED);
+        gridMap.setTile(1, 2, TileLabel.SOLID);
+        gridMap.setTile(40, 20, TileLabel.FLOODFILLED);
+        for(int x=3; x<10; x++){
+            gridMap.setTile(x, 5, TileLabel.PATH_G);
+            gridMap.addCurrentPathArea(x, 5);
+        }
+        gridMap.setTile(9, 5, TileLabel.PATH_R);
+
+        player.kill();
+        assertTrue(!player.isAlive());
+        assertEquals(0, gridMap.getCurrentPathArea().size());
+        assertEquals(TileLabel.FILLED, gridMap.getTile(1, 1));
+        assertEquals(TileLabel.SOLID, gridMap.getTile(1, 2));
+        assertEquals(64 * 32 - 2, gridMap.getTileCount(TileLabel.EMPTY));
+    }
 }